@@ -0,0 +1,46 @@
+package maze;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The maze files the benchmarks read. Names like "maze7.txt" are the
+ * fixtures, looked up in the directory given by the maze.dir property (the
+ * working directory by default). Names like "large-2000" are square door
+ * mazes of that width from MazeGenerator, generated once per run into a
+ * temporary file.
+ */
+final class BenchmarkMazes {
+
+	private static final Map<String, String> GENERATED = new HashMap<>();
+
+	private BenchmarkMazes() {
+	}
+
+	/**
+	 * returns the path of a maze file
+	 */
+	static synchronized String path(String name) {
+		if (!name.startsWith("large-")) {
+			return new File(System.getProperty("maze.dir", "."), name).getPath();
+		}
+		return GENERATED.computeIfAbsent(name, key -> generate(Integer.parseInt(key.substring("large-".length()))));
+	}
+
+	/**
+	 * Write a door maze with as many coins as it is wide, which is usually enough to reach the exit
+	 */
+	private static String generate(int width) {
+		try {
+			File file = File.createTempFile("maze-" + width + "-", ".txt");
+			file.deleteOnExit();
+			new MazeGenerator(MazeGenerator.Kind.DOORS, width, width, width, width).write(file.getPath());
+			return file.getPath();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package maze;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Graph construction and lookups on a square grid of rooms where every room
+ * is joined to its right and lower neighbours. Lookups are timed over a batch
+ * of random neighbouring pairs, reported per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GraphBenchmark {
+
+	private static final int BATCH = 1024;
+
+	@Param({"10000", "1000000"})
+	public int nodes;
+
+	@Param({"false", "true"})
+	public boolean indexed;
+
+	private int width;
+	private Graph graph;
+	private GraphNode[] from;
+	private GraphNode[] to;
+
+	@Setup
+	public void setUp() throws GraphException {
+		width = (int) Math.sqrt(nodes);
+		graph = build();
+		Random random = new Random(42);
+		from = new GraphNode[BATCH];
+		to = new GraphNode[BATCH];
+		for (int i = 0; i < BATCH; i++) {
+			int u = random.nextInt(width * (width - 1));
+			// the right neighbour unless u ends a row, otherwise the one below
+			int v = (u + 1) % width != 0 ? u + 1 : u + width;
+			from[i] = graph.getNode(u);
+			to[i] = graph.getNode(v);
+		}
+	}
+
+	/**
+	 * Make the graph and insert every edge
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Graph construct() throws GraphException {
+		return build();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void getEdge(Blackhole blackhole) throws GraphException {
+		for (int i = 0; i < BATCH; i++) {
+			blackhole.consume(graph.getEdge(from[i], to[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void areAdjacent(Blackhole blackhole) throws GraphException {
+		for (int i = 0; i < BATCH; i++) {
+			blackhole.consume(graph.areAdjacent(from[i], to[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void incidentEdges(Blackhole blackhole) throws GraphException {
+		for (int i = 0; i < BATCH; i++) {
+			Iterator<GraphEdge> edges = graph.incidentEdges(from[i]);
+			while (edges.hasNext()) {
+				blackhole.consume(edges.next());
+			}
+		}
+	}
+
+	private Graph build() throws GraphException {
+		int n = width * width;
+		Graph g = new Graph(n, indexed);
+		for (int u = 0; u < n; u++) {
+			if ((u + 1) % width != 0) {
+				g.insertEdge(g.getNode(u), g.getNode(u + 1), 0, "corridor");
+			}
+			if (u + width < n) {
+				g.insertEdge(g.getNode(u), g.getNode(u + width), 0, "corridor");
+			}
+		}
+		return g;
+	}
+}
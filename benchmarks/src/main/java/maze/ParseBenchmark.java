@@ -0,0 +1,45 @@
+package maze;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a maze file into each representation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({"maze0.txt", "maze1.txt", "maze3.txt", "maze4.txt", "maze7.txt", "maze8.txt", "large-1000", "large-2000"})
+	public String file;
+
+	@Param({"ADJACENCY_LIST", "COMPACT", "GRID"})
+	public Maze.Representation representation;
+
+	private String path;
+
+	@Setup
+	public void setUp() {
+		path = BenchmarkMazes.path(file);
+	}
+
+	@Benchmark
+	public Maze parse() throws MazeException {
+		return new Maze(path, representation);
+	}
+}
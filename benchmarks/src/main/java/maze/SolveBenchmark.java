@@ -0,0 +1,51 @@
+package maze;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Solving a loaded maze end to end, walking the whole path. BACKTRACKING is
+ * left out: it tries every simple route and does not finish on the larger mazes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolveBenchmark {
+
+	@Param({"maze0.txt", "maze1.txt", "maze3.txt", "maze4.txt", "maze7.txt", "maze8.txt", "large-1000", "large-2000"})
+	public String file;
+
+	@Param({"DEPTH_FIRST", "FEWEST_ROOMS", "FEWEST_COINS", "A_STAR", "PARALLEL_FEWEST_ROOMS", "BIDIRECTIONAL"})
+	public Maze.Strategy strategy;
+
+	private Maze maze;
+
+	@Setup
+	public void setUp() throws MazeException {
+		maze = new Maze(BenchmarkMazes.path(file));
+	}
+
+	@Benchmark
+	public void solve(Blackhole blackhole) {
+		Iterator<GraphNode> path = maze.solve(strategy);
+		while (path != null && path.hasNext()) {
+			blackhole.consume(path.next());
+		}
+	}
+}
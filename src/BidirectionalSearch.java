@@ -0,0 +1,299 @@
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Breadth first search from the start and the end at the same time, one
+ * level per side per round, stopping after the first round in which the two
+ * sides meet. When both sides can run at once, the end side runs on the
+ * common ForkJoinPool while the start side runs on the caller.
+ *
+ * Each side counts the coins spent from its own end and enters a node again
+ * only if it gets there spending less than before. A node where the two sides'
+ * cheapest arrivals together fit in the coins joins a valid route. Without
+ * doors the route found is the shortest; with doors it is a route the coins
+ * can pay for, not necessarily the shortest one.
+ */
+public final class BidirectionalSearch {
+
+	private BidirectionalSearch() {
+	}
+
+	/**
+	 * Search for a path from both ends
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @return the path, or null if there is none
+	 */
+	public static int[] search(IndexedGraph graph, int start, int end, int coins) {
+		return search(graph, start, end, coins, null);
+	}
+
+	/**
+	 * search, counting into stats once per round
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] search(IndexedGraph graph, int start, int end, int coins, SolveStats stats) {
+		if (start == end) {
+			return new int[] {start};
+		}
+		Side forward = new Side(graph, start, coins);
+		Side backward = new Side(graph, end, coins);
+		forward.other = backward;
+		backward.other = forward;
+		boolean together = ForkJoinPool.getCommonPoolParallelism() > 1;
+
+		while (!forward.exhausted() || !backward.exhausted()) {
+			if (stats != null) {
+				stats.frontier(forward.levelSize() + backward.levelSize());
+			}
+			if (together) {
+				CompletableFuture<Void> back = CompletableFuture.runAsync(backward::expandLevel);
+				forward.expandLevel();
+				back.join();
+			} else {
+				forward.expandLevel();
+				backward.expandLevel();
+			}
+			if (stats != null) {
+				forward.report(stats);
+				backward.report(stats);
+			}
+			int[] path = meet(forward, backward);
+			if (path != null) {
+				return path;
+			}
+			if (stats != null && forward.halted(stats)) {
+				// the start side is the one heading for the end, so the route is its own
+				return forward.path(forward.bestState[stats.closest()]);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Pick the shortest route through the meeting nodes found in the last round
+	 * @return the route, or null if the sides have not met
+	 */
+	private static int[] meet(Side forward, Side backward) {
+		int bestNode = -1;
+		int bestLength = Integer.MAX_VALUE;
+		for (Side side : new Side[] {forward, backward}) {
+			for (int i = 0; i < side.meetingCount; i++) {
+				int node = side.meetings[i];
+				int length = forward.depth(forward.bestState[node]) + backward.depth(backward.bestState[node]);
+				if (length < bestLength) {
+					bestLength = length;
+					bestNode = node;
+				}
+			}
+		}
+		if (bestNode < 0) {
+			return null;
+		}
+		int[] head = forward.path(forward.bestState[bestNode]);
+		int[] tail = backward.path(backward.bestState[bestNode]);
+		int[] path = Arrays.copyOf(head, head.length + tail.length - 1);
+		// the end side's path runs from the end to the meeting node, so append it backwards
+		for (int i = 1; i < tail.length; i++) {
+			path[head.length - 1 + i] = tail[tail.length - 1 - i];
+		}
+		return removeLoops(path, forward.graph.numNodes());
+	}
+
+	/**
+	 * Cut out any stretch of a route that leaves a node and comes back to it.
+	 * A stitched route can do that when the two halves cross, and skipping the
+	 * loop never costs more coins.
+	 * @param path the nodes of the route
+	 * @param nodes the number of nodes in the graph
+	 * @return the route without loops, path itself if it has none
+	 */
+	static int[] removeLoops(int[] path, int nodes) {
+		// the last position of each node on the route
+		SearchScratch last = SearchScratch.acquire(nodes, -1);
+		try {
+			int distinct = 0;
+			for (int i = 0; i < path.length; i++) {
+				if (last.get(0, path[i]) < 0) {
+					distinct++;
+				}
+				last.set(0, path[i], i);
+			}
+			if (distinct == path.length) {
+				return path;
+			}
+			int[] simple = new int[distinct];
+			int length = 0;
+			for (int i = 0; i < path.length; i = last.get(0, path[i]) + 1) {
+				simple[length++] = path[i];
+			}
+			return Arrays.copyOf(simple, length);
+		} finally {
+			last.release();
+		}
+	}
+
+	/**
+	 * One direction of the search
+	 */
+	private static final class Side {
+		private final IndexedGraph graph;
+		private final int coins;
+		// one more than the fewest coins spent reaching each node, 0 if never reached;
+		// the other side reads it while this one runs
+		final AtomicIntegerArray bestSpent;
+		// the state holding that arrival, read by the other side only between rounds
+		final int[] bestState;
+		Side other;
+
+		// the states, each a node, the coins spent reaching it, its parent state and its depth
+		private int[] nodes = new int[16];
+		private int[] spent = new int[16];
+		private int[] parents = new int[16];
+		private int[] depths = new int[16];
+		private int size;
+		// the states of the current level are levelStart .. size-1
+		private int levelStart;
+
+		// nodes where this side found the other one during the last round
+		int[] meetings = new int[16];
+		int meetingCount;
+
+		// the counts for the last round, read by the caller once the round is over
+		private long visited;
+		private long considered;
+		private long unaffordable;
+
+		Side(IndexedGraph graph, int from, int coins) {
+			this.graph = graph;
+			this.coins = coins;
+			bestSpent = new AtomicIntegerArray(graph.numNodes());
+			bestState = new int[graph.numNodes()];
+			bestSpent.set(from, 1);
+			bestState[from] = add(from, 0, -1, 0);
+		}
+
+		boolean exhausted() {
+			return levelStart == size;
+		}
+
+		int levelSize() {
+			return size - levelStart;
+		}
+
+		/**
+		 * Add the counts for the last round to stats and start counting again
+		 */
+		void report(SolveStats stats) {
+			stats.visited(visited);
+			stats.considered(considered, unaffordable);
+			visited = 0;
+			considered = 0;
+			unaffordable = 0;
+		}
+
+		/**
+		 * Pass the states reached in the last round to a budget check
+		 * @return true if the search must stop
+		 */
+		boolean halted(SolveStats stats) {
+			for (int state = levelStart; state < size; state++) {
+				if (stats.halted(nodes[state])) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		int depth(int state) {
+			return depths[state];
+		}
+
+		/**
+		 * Expand every state of the current level
+		 */
+		void expandLevel() {
+			meetingCount = 0;
+			int levelEnd = size;
+			visited += levelEnd - levelStart;
+			// both sides report to the sink, the coins being those left from their own end
+			TraceSink sink = Trace.sink();
+			for (int state = levelStart; state < levelEnd; state++) {
+				int node = nodes[state];
+				if (sink != null) {
+					sink.nodeVisited(node, coins - spent[state]);
+				}
+				int degree = graph.degree(node);
+				considered += degree;
+				for (int i = 0; i < degree; i++) {
+					int next = graph.neighbour(node, i);
+					int cost = spent[state] + graph.edgeType(node, i);
+					if (sink != null) {
+						sink.edgeConsidered(node, next, coins - cost);
+					}
+					if (cost > coins) {
+						unaffordable++;
+					}
+					if (cost > coins || !lower(next, cost + 1)) {
+						continue;
+					}
+					bestState[next] = add(next, cost, state, depths[state] + 1);
+					int theirs = other.bestSpent.get(next);
+					if (theirs > 0 && cost + theirs - 1 <= coins) {
+						if (meetingCount == meetings.length) {
+							meetings = Arrays.copyOf(meetings, meetingCount * 2);
+						}
+						meetings[meetingCount++] = next;
+					}
+				}
+			}
+			levelStart = levelEnd;
+		}
+
+		/**
+		 * Lower the best arrival at a node if the given one is cheaper. Only this
+		 * side writes its table; the volatile write and the read of the other
+		 * side's table that follows it ensure that when both sides reach a node
+		 * in the same round, at least one of them sees the other.
+		 * @return true if it was lowered
+		 */
+		private boolean lower(int node, int value) {
+			int seen = bestSpent.get(node);
+			if (seen != 0 && value >= seen) {
+				return false;
+			}
+			bestSpent.set(node, value);
+			return true;
+		}
+
+		private int add(int node, int cost, int parent, int depth) {
+			if (size == nodes.length) {
+				int capacity = size * 2;
+				nodes = Arrays.copyOf(nodes, capacity);
+				spent = Arrays.copyOf(spent, capacity);
+				parents = Arrays.copyOf(parents, capacity);
+				depths = Arrays.copyOf(depths, capacity);
+			}
+			nodes[size] = node;
+			spent[size] = cost;
+			parents[size] = parent;
+			depths[size] = depth;
+			return size++;
+		}
+
+		/**
+		 * returns the nodes from this side's first node to the given state
+		 */
+		int[] path(int state) {
+			int[] path = new int[depths[state] + 1];
+			for (int s = state; s >= 0; s = parents[s]) {
+				path[depths[s]] = nodes[s];
+			}
+			return path;
+		}
+	}
+}
@@ -1,11 +1,29 @@
 import java.awt.*;
+import java.awt.image.*;
 import javax.swing.*;
 
 public class Board extends JComponent {
+    private BufferedImage image;     // Back buffer holding the drawing of the maze
 
     public Board() {}
 
+    public void setImage(BufferedImage image) {
+	    this.image = image;
+    }
+
     public void paint(Graphics display) {
 	    display.setColor(Color.lightGray);
+	    if (image == null) return;
+
+	    // Copy only the part of the back buffer that needs repainting
+	    Rectangle area = display.getClipBounds();
+	    if (area == null) area = new Rectangle(0,0,getWidth(),getHeight());
+	    int x1 = area.x, y1 = area.y;
+	    int x2 = Math.min(area.x+area.width,image.getWidth());
+	    int y2 = Math.min(area.y+area.height,image.getHeight());
+	    if (x2 <= x1 || y2 <= y1) return;
+	    synchronized (image) {
+		    display.drawImage(image,x1,y1,x2,y2,x1,y1,x2,y2,null);
+	    }
     }
 }
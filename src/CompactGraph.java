@@ -0,0 +1,644 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A GraphADT stored in compressed sparse row (CSR) form.
+ *
+ * Every edge appears once in the adjacency of each endpoint. For node u the
+ * slots offsets[u] .. offsets[u+1]-1 hold the neighbour, the edge type and a
+ * flag byte (label index plus a bit telling whether u was the first endpoint
+ * given to insertEdge). Nodes and edges are not stored as objects; GraphNode
+ * and GraphEdge views are created on demand and write through to the arrays.
+ *
+ * Edges inserted with insertEdge are buffered and folded into the CSR arrays
+ * the next time the graph is queried, so bulk loading stays linear. Pending
+ * edges are also chained per node, so a second edge between the same two
+ * nodes is rejected as it is inserted, as GraphADT requires.
+ *
+ * A grid maze can also be loaded in one go with fromGrid, which fills the
+ * CSR arrays directly, a band of nodes per task, without buffering edges.
+ *
+ * Labels are stored as a 7 bit index into a table of the distinct labels, so
+ * a graph can hold at most 128 different labels; insertEdge and setLabel
+ * reject any more.
+ */
+public class CompactGraph implements GraphADT, IndexedGraph {
+
+	// flag bit marking the slot of the first endpoint of an edge
+	private static final int ORIGIN = 0x80;
+	// the remaining flag bits index the label table
+	private static final int LABEL_MASK = 0x7f;
+	// the nodes in each task of fromGrid
+	private static final int GRID_BAND = 1 << 16;
+
+	/**
+	 * The number of nodes
+	 */
+	private final int numNodes;
+	/**
+	 * The mark bit of every node
+	 */
+	private final long[] marked;
+	/**
+	 * The distinct edge labels, indexed by the flag bytes
+	 */
+	private final List<String> labels = new ArrayList<>();
+	private final Map<String, Integer> labelIndexes = new HashMap<>();
+
+	// the CSR arrays: slots of node u are offsets[u] .. offsets[u+1]-1
+	private int[] offsets;
+	private int[] targets;
+	private byte[] types;
+	// only allocated once a type does not fit in a byte
+	private int[] wideTypes;
+	private byte[] flags;
+
+	// edges inserted since the CSR arrays were last built
+	private int pendingCount;
+	private int[] pendingFrom = new int[16];
+	private int[] pendingTo = new int[16];
+	private int[] pendingType = new int[16];
+	private byte[] pendingLabel = new byte[16];
+	// the last pending edge of each node, and the one before it in the chain of each endpoint; -1 ends a chain
+	private int[] pendingHead;
+	private int[] pendingNextFrom = new int[16];
+	private int[] pendingNextTo = new int[16];
+
+	// bumped every time the CSR arrays are rebuilt, so edge views can find their slot again
+	private int version;
+
+	/**
+	 * Constructor for the graph
+	 * @param n the number of nodes
+	 */
+	public CompactGraph(int n) {
+		numNodes = n;
+		marked = new long[(n + 63) >>> 6];
+		offsets = new int[n + 1];
+		targets = new int[0];
+		types = new byte[0];
+		flags = new byte[0];
+	}
+
+	/**
+	 * Build the graph of a grid maze straight into the CSR arrays. Each band
+	 * of nodes counts its degrees, one prefix sum turns them into offsets, and
+	 * each band then fills its own slots. The graph is the same as inserting
+	 * the links of the grid row by row, rights before downs, as Maze does:
+	 * every node has its edges in the order up, left, right, down.
+	 * @param grid the maze
+	 * @param pool the pool to count and fill the bands on
+	 * @return the graph
+	 */
+	public static CompactGraph fromGrid(GridGraph grid, ForkJoinPool pool) {
+		int numNodes = grid.numNodes();
+		CompactGraph graph = new CompactGraph(numNodes);
+		graph.labels.add("corridor");
+		graph.labels.add("door");
+		graph.labelIndexes.put("corridor", 0);
+		graph.labelIndexes.put("door", 1);
+
+		int[] offsets = graph.offsets;
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < numNodes; from += GRID_BAND) {
+			int first = from;
+			int last = Math.min(numNodes, from + GRID_BAND);
+			tasks.add(() -> {
+				for (int u = first; u < last; u++) {
+					int degree = 0;
+					for (int direction = 0; direction < 4; direction++) {
+						if (gridLink(grid, u, direction) != GridGraph.WALL) {
+							degree++;
+						}
+					}
+					offsets[u + 1] = degree;
+				}
+				return null;
+			});
+		}
+		invokeAll(pool, tasks);
+		for (int u = 0; u < numNodes; u++) {
+			offsets[u + 1] += offsets[u];
+		}
+
+		int slots = offsets[numNodes];
+		graph.targets = new int[slots];
+		graph.types = new byte[slots];
+		graph.flags = new byte[slots];
+		int width = grid.getWidth();
+		int[] steps = {-width, -1, 1, width};
+		tasks.clear();
+		for (int from = 0; from < numNodes; from += GRID_BAND) {
+			int first = from;
+			int last = Math.min(numNodes, from + GRID_BAND);
+			tasks.add(() -> {
+				for (int u = first; u < last; u++) {
+					int slot = offsets[u];
+					for (int direction = 0; direction < 4; direction++) {
+						int code = gridLink(grid, u, direction);
+						if (code == GridGraph.WALL) {
+							continue;
+						}
+						int label = code >= GridGraph.DOOR ? 1 : 0;
+						// the room on the left or above was the first endpoint inserted
+						graph.targets[slot] = u + steps[direction];
+						graph.types[slot] = (byte) (code >= GridGraph.DOOR ? code - GridGraph.DOOR : 0);
+						graph.flags[slot] = (byte) (direction >= 2 ? label | ORIGIN : label);
+						slot++;
+					}
+				}
+				return null;
+			});
+		}
+		invokeAll(pool, tasks);
+		return graph;
+	}
+
+	/**
+	 * returns the link code from a room of a grid in a direction, WALL if there is no room that way
+	 * @param direction 0 for up, 1 for left, 2 for right, 3 for down
+	 */
+	private static int gridLink(GridGraph grid, int u, int direction) {
+		int width = grid.getWidth();
+		switch (direction) {
+			case 0:
+				return u >= width ? grid.lower(u - width) : GridGraph.WALL;
+			case 1:
+				return u % width != 0 ? grid.right(u - 1) : GridGraph.WALL;
+			case 2:
+				return (u + 1) % width != 0 ? grid.right(u) : GridGraph.WALL;
+			default:
+				return u + width < grid.numNodes() ? grid.lower(u) : GridGraph.WALL;
+		}
+	}
+
+	private static void invokeAll(ForkJoinPool pool, List<Callable<Void>> tasks) {
+		try {
+			for (Future<Void> task : pool.invokeAll(tasks)) {
+				task.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Build interrupted");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Build failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Insert an edge into the graph
+	 * @param nodeu the first node
+	 * @param nodev the second node
+	 * @param type the type of the edge
+	 * @param label the label of the edge
+	 * @throws GraphException if either node does not exist, the nodes are already joined,
+	 * or the graph already has 128 other labels
+	 */
+	@Override
+	public void insertEdge(GraphNode nodeu, GraphNode nodev, int type, String label) throws GraphException {
+		checkNode(nodeu);
+		checkNode(nodev);
+		insertEdge(nodeu.getName(), nodev.getName(), type, label);
+	}
+
+	/**
+	 * Insert an edge between two nodes given by name, without creating node views
+	 * @param u the first node
+	 * @param v the second node
+	 * @param type the type of the edge
+	 * @param label the label of the edge
+	 * @throws GraphException if either node does not exist, the nodes are already joined,
+	 * or the graph already has 128 other labels
+	 */
+	public void insertEdge(int u, int v, int type, String label) throws GraphException {
+		checkNode(u);
+		checkNode(v);
+		if (findSlot(u, v) >= 0 || findPending(u, v) >= 0) {
+			throw new GraphException("Edge already exists");
+		}
+		int labelIndex = labelIndex(label);
+		if (pendingCount == pendingFrom.length) {
+			int capacity = pendingCount * 2;
+			pendingFrom = Arrays.copyOf(pendingFrom, capacity);
+			pendingTo = Arrays.copyOf(pendingTo, capacity);
+			pendingType = Arrays.copyOf(pendingType, capacity);
+			pendingLabel = Arrays.copyOf(pendingLabel, capacity);
+			pendingNextFrom = Arrays.copyOf(pendingNextFrom, capacity);
+			pendingNextTo = Arrays.copyOf(pendingNextTo, capacity);
+		}
+		if (pendingHead == null) {
+			pendingHead = new int[numNodes];
+			Arrays.fill(pendingHead, -1);
+		}
+		int e = pendingCount;
+		pendingFrom[e] = u;
+		pendingTo[e] = v;
+		pendingType[e] = type;
+		pendingLabel[e] = (byte) labelIndex;
+		pendingNextFrom[e] = pendingHead[u];
+		pendingHead[u] = e;
+		// a loop is only chained once, from its first endpoint
+		pendingNextTo[e] = u == v ? -1 : pendingHead[v];
+		pendingHead[v] = e;
+		pendingCount++;
+	}
+
+	/**
+	 * Find a pending edge joining two nodes
+	 * @return the pending edge, or -1 if there is none
+	 */
+	private int findPending(int u, int v) {
+		if (pendingHead == null) {
+			return -1;
+		}
+		int e = pendingHead[u];
+		while (e >= 0) {
+			boolean from = pendingFrom[e] == u;
+			if ((from ? pendingTo[e] : pendingFrom[e]) == v) {
+				return e;
+			}
+			e = from ? pendingNextFrom[e] : pendingNextTo[e];
+		}
+		return -1;
+	}
+
+	/**
+	 * Get a node from the graph
+	 * @param u the name of the node
+	 * @return a view of the node
+	 * @throws GraphException if the node does not exist
+	 */
+	@Override
+	public GraphNode getNode(int u) throws GraphException {
+		checkNode(u);
+		return new NodeView(u);
+	}
+
+	/**
+	 * Get the edges incident on a node, in the order they were inserted
+	 * @param u the node
+	 * @return the edges incident on the node
+	 * @throws GraphException if the node does not exist
+	 */
+	@Override
+	public Iterator<GraphEdge> incidentEdges(GraphNode u) throws GraphException {
+		checkNode(u);
+		build();
+		int node = u.getName();
+		return new Iterator<GraphEdge>() {
+			private int slot = offsets[node];
+			private final int last = offsets[node + 1];
+
+			@Override
+			public boolean hasNext() {
+				return slot < last;
+			}
+
+			@Override
+			public GraphEdge next() {
+				if (slot >= last) {
+					throw new NoSuchElementException();
+				}
+				return edgeView(node, slot++);
+			}
+		};
+	}
+
+	/**
+	 * Get an edge between two nodes
+	 * @param u the first node
+	 * @param v the second node
+	 * @return the edge between the nodes, or null if they are not adjacent
+	 * @throws GraphException if either node does not exist
+	 */
+	@Override
+	public GraphEdge getEdge(GraphNode u, GraphNode v) throws GraphException {
+		checkNode(u);
+		checkNode(v);
+		build();
+		int slot = findSlot(u.getName(), v.getName());
+		return slot < 0 ? null : edgeView(u.getName(), slot);
+	}
+
+	/**
+	 * Check if two nodes are adjacent
+	 * @param u the first node
+	 * @param v the second node
+	 * @return true if the nodes are adjacent, false otherwise
+	 * @throws GraphException if either node does not exist
+	 */
+	@Override
+	public boolean areAdjacent(GraphNode u, GraphNode v) throws GraphException {
+		checkNode(u);
+		checkNode(v);
+		build();
+		return findSlot(u.getName(), v.getName()) >= 0;
+	}
+
+	/**
+	 * returns the number of nodes
+	 * @return the number of nodes
+	 */
+	@Override
+	public int numNodes() {
+		return numNodes;
+	}
+
+	/**
+	 * returns the number of edges incident on a node
+	 * @param u the name of the node
+	 * @return the degree of the node
+	 */
+	@Override
+	public int degree(int u) {
+		build();
+		return offsets[u + 1] - offsets[u];
+	}
+
+	/**
+	 * returns the node at the other end of an incident edge
+	 * @param u the name of the node
+	 * @param i the position of the edge among the edges of u
+	 * @return the name of the neighbour
+	 */
+	@Override
+	public int neighbour(int u, int i) {
+		return targets[offsets[u] + i];
+	}
+
+	/**
+	 * returns the type of an incident edge
+	 * @param u the name of the node
+	 * @param i the position of the edge among the edges of u
+	 * @return the type of the edge
+	 */
+	@Override
+	public int edgeType(int u, int i) {
+		return slotType(offsets[u] + i);
+	}
+
+	/**
+	 * returns the number of edges
+	 * @return the number of edges
+	 */
+	public int numEdges() {
+		return (offsets[numNodes] + 2 * pendingCount) / 2;
+	}
+
+	/**
+	 * Fold the pending edges into the CSR arrays. Each node keeps its existing
+	 * slots first, followed by its new edges in insertion order.
+	 *
+	 * Queries do this on their own, but once loading is done it should be
+	 * called before the graph is read from several threads.
+	 */
+	public void build() {
+		if (pendingCount == 0) {
+			return;
+		}
+		int[] newOffsets = new int[numNodes + 1];
+		for (int u = 0; u < numNodes; u++) {
+			newOffsets[u + 1] = offsets[u + 1] - offsets[u];
+		}
+		for (int e = 0; e < pendingCount; e++) {
+			newOffsets[pendingFrom[e] + 1]++;
+			newOffsets[pendingTo[e] + 1]++;
+		}
+		for (int u = 0; u < numNodes; u++) {
+			newOffsets[u + 1] += newOffsets[u];
+		}
+
+		int slots = newOffsets[numNodes];
+		int[] newTargets = new int[slots];
+		byte[] newTypes = new byte[slots];
+		int[] newWideTypes = wideTypes == null ? null : new int[slots];
+		byte[] newFlags = new byte[slots];
+		// next free slot of every node
+		int[] fill = new int[numNodes];
+		for (int u = 0; u < numNodes; u++) {
+			int from = offsets[u];
+			int count = offsets[u + 1] - from;
+			int to = newOffsets[u];
+			System.arraycopy(targets, from, newTargets, to, count);
+			System.arraycopy(types, from, newTypes, to, count);
+			System.arraycopy(flags, from, newFlags, to, count);
+			if (newWideTypes != null) {
+				System.arraycopy(wideTypes, from, newWideTypes, to, count);
+			}
+			fill[u] = to + count;
+		}
+		targets = newTargets;
+		types = newTypes;
+		wideTypes = newWideTypes;
+		flags = newFlags;
+		offsets = newOffsets;
+
+		for (int e = 0; e < pendingCount; e++) {
+			int u = pendingFrom[e];
+			int v = pendingTo[e];
+			int label = pendingLabel[e];
+			fillSlot(fill[u]++, v, pendingType[e], label | ORIGIN);
+			fillSlot(fill[v]++, u, pendingType[e], label);
+		}
+		pendingCount = 0;
+		// release the load buffers, they can be as large as the graph itself
+		pendingFrom = new int[16];
+		pendingTo = new int[16];
+		pendingType = new int[16];
+		pendingLabel = new byte[16];
+		pendingHead = null;
+		pendingNextFrom = new int[16];
+		pendingNextTo = new int[16];
+		version++;
+	}
+
+	/**
+	 * Store one half of an edge
+	 * @param slot the slot to fill
+	 * @param target the node at the other end
+	 * @param type the type of the edge
+	 * @param flag the label index and origin bit
+	 */
+	private void fillSlot(int slot, int target, int type, int flag) {
+		targets[slot] = target;
+		flags[slot] = (byte) flag;
+		setSlotType(slot, type);
+	}
+
+	/**
+	 * returns the type stored in a slot
+	 */
+	private int slotType(int slot) {
+		return wideTypes != null ? wideTypes[slot] : types[slot];
+	}
+
+	/**
+	 * Set the type stored in a slot, widening the type array if needed
+	 */
+	private void setSlotType(int slot, int type) {
+		if (wideTypes == null && type != (byte) type) {
+			wideTypes = new int[types.length];
+			for (int i = 0; i < types.length; i++) {
+				wideTypes[i] = types[i];
+			}
+		}
+		if (wideTypes != null) {
+			wideTypes[slot] = type;
+		} else {
+			types[slot] = (byte) type;
+		}
+	}
+
+	/**
+	 * Find the slot of node u that points to node v
+	 * @return the slot, or -1 if u and v are not adjacent
+	 */
+	private int findSlot(int u, int v) {
+		for (int slot = offsets[u]; slot < offsets[u + 1]; slot++) {
+			if (targets[slot] == v) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * returns the index of a label in the label table, adding it if needed
+	 */
+	private int labelIndex(String label) throws GraphException {
+		Integer index = labelIndexes.get(label);
+		if (index == null) {
+			if (labels.size() > LABEL_MASK) {
+				throw new GraphException("Too many distinct edge labels, at most " + (LABEL_MASK + 1));
+			}
+			index = labels.size();
+			labels.add(label);
+			labelIndexes.put(label, index);
+		}
+		return index;
+	}
+
+	/**
+	 * Create the view of the edge stored in a slot of node u
+	 */
+	private GraphEdge edgeView(int u, int slot) {
+		GraphNode self = new NodeView(u);
+		GraphNode other = new NodeView(targets[slot]);
+		boolean origin = (flags[slot] & ORIGIN) != 0;
+		return new EdgeView(origin ? self : other, origin ? other : self, u, slot);
+	}
+
+	private void checkNode(GraphNode u) throws GraphException {
+		checkNode(u.getName());
+	}
+
+	private void checkNode(int u) throws GraphException {
+		if (u < 0 || u >= numNodes) {
+			throw new GraphException("Node does not exist");
+		}
+	}
+
+	/**
+	 * A node of this graph. Its mark is kept in the graph's bitset.
+	 */
+	private class NodeView extends GraphNode {
+
+		NodeView(int name) {
+			super(name);
+		}
+
+		@Override
+		public void mark(boolean mark) {
+			int name = getName();
+			if (mark) {
+				marked[name >>> 6] |= 1L << name;
+			} else {
+				marked[name >>> 6] &= ~(1L << name);
+			}
+		}
+
+		@Override
+		public boolean isMarked() {
+			int name = getName();
+			return (marked[name >>> 6] & (1L << name)) != 0;
+		}
+	}
+
+	/**
+	 * An edge of this graph. Reads and writes go to both slots of the edge.
+	 */
+	private class EdgeView extends GraphEdge {
+		// the node whose adjacency the slot belongs to, and the node at the other end
+		private final int node;
+		private final int target;
+		private int slot;
+		private int slotVersion;
+
+		EdgeView(GraphNode first, GraphNode second, int node, int slot) {
+			super(first, second, 0, null);
+			this.node = node;
+			this.target = targets[slot];
+			this.slot = slot;
+			this.slotVersion = version;
+		}
+
+		/**
+		 * returns the slot of this edge, looking it up again if the graph was rebuilt
+		 */
+		private int slot() {
+			build();
+			if (slotVersion != version) {
+				slot = findSlot(node, target);
+				slotVersion = version;
+			}
+			return slot;
+		}
+
+		/**
+		 * returns the matching slot in the adjacency of the other endpoint
+		 */
+		private int twin() {
+			return findSlot(target, node);
+		}
+
+		@Override
+		public int getType() {
+			return slotType(slot());
+		}
+
+		@Override
+		public void setType(int newType) {
+			int slot = slot();
+			setSlotType(slot, newType);
+			setSlotType(twin(), newType);
+		}
+
+		@Override
+		public String getLabel() {
+			return labels.get(flags[slot()] & LABEL_MASK);
+		}
+
+		@Override
+		public void setLabel(String newLabel) {
+			int slot = slot();
+			int index;
+			try {
+				index = labelIndex(newLabel);
+			} catch (GraphException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+			int twin = twin();
+			flags[slot] = (byte) ((flags[slot] & ORIGIN) | index);
+			flags[twin] = (byte) ((flags[twin] & ORIGIN) | index);
+		}
+	}
+}
@@ -0,0 +1,293 @@
+import java.util.Arrays;
+
+/**
+ * A maze with its corridors contracted. Most rooms of a maze have exactly
+ * two open sides, so a search spends most of its steps walking along
+ * corridors where there is no choice to make, or down dead ends that cannot
+ * lead anywhere. This graph first cuts off every dead end other than the
+ * start and the end, along with the rooms that only lead to dead ends, then
+ * keeps only the rooms where there is a choice, the start and the end; every
+ * run of two-sided rooms between two kept rooms becomes one edge whose type
+ * is the sum of the door costs along it.
+ *
+ * Searches over IndexedGraph run on it unchanged, over far fewer nodes, and
+ * expand turns the path they find back into the rooms of the maze. The rooms
+ * inside a corridor are not stored: each edge remembers which side of its
+ * first room it leaves by, and the corridor is walked again when a path
+ * through it is expanded. Corridors that lead back to the room they started
+ * from are dropped, since no path without repeated rooms can use them.
+ * Where two corridors join the same two rooms, each is cut in two by keeping
+ * its first room, so there is at most one edge between two nodes and the
+ * nodes of a path say which corridors it takes. A depth first search over
+ * every route therefore finds the same path here as over the whole maze.
+ */
+public class CorridorGraph implements IndexedGraph {
+
+	// the node of a room inside a corridor, and of a room cut off with the dead ends
+	private static final int CORRIDOR = -1;
+	private static final int DEAD = -2;
+
+	private final IndexedGraph graph;
+	// the room of each node, and the node of each room or CORRIDOR or DEAD
+	private final int[] rooms;
+	private final int[] nodes;
+	// the edges of node u are first[u] .. first[u + 1] - 1
+	private final int[] first;
+	private final int[] targets;
+	private final int[] costs;
+	// the rooms along each edge, counting the room it ends in
+	private final int[] lengths;
+	// the position in the graph of the side of its first room each edge leaves by
+	private final int[] sides;
+
+	private CorridorGraph(IndexedGraph graph, int[] rooms, int[] nodes, int[] first, int[] targets, int[] costs,
+			int[] lengths, int[] sides) {
+		this.graph = graph;
+		this.rooms = rooms;
+		this.nodes = nodes;
+		this.first = first;
+		this.targets = targets;
+		this.costs = costs;
+		this.lengths = lengths;
+		this.sides = sides;
+	}
+
+	/**
+	 * Contract the corridors of a graph
+	 * @param graph the graph, which must not change while the contracted graph is in use
+	 * @param start a room to keep, normally the start of the maze
+	 * @param end another room to keep, normally the end
+	 * @return the contracted graph
+	 */
+	public static CorridorGraph build(IndexedGraph graph, int start, int end) {
+		int numRooms = graph.numNodes();
+		// the open sides of each room that do not lead into a dead end, or DEAD
+		int[] open = new int[numRooms];
+		int[] stack = new int[numRooms];
+		int top = 0;
+		for (int u = 0; u < numRooms; u++) {
+			open[u] = graph.degree(u);
+			if (open[u] <= 1 && u != start && u != end) {
+				open[u] = DEAD;
+				stack[top++] = u;
+			}
+		}
+		// a room left with one open side is a dead end too
+		while (top > 0) {
+			int u = stack[--top];
+			int degree = graph.degree(u);
+			for (int i = 0; i < degree; i++) {
+				int v = graph.neighbour(u, i);
+				if (open[v] != DEAD && --open[v] <= 1 && v != start && v != end) {
+					open[v] = DEAD;
+					stack[top++] = v;
+				}
+			}
+		}
+
+		int[] nodes = new int[numRooms];
+		for (int u = 0; u < numRooms; u++) {
+			nodes[u] = open[u] == DEAD ? DEAD : open[u] != 2 || u == start || u == end ? 0 : CORRIDOR;
+		}
+		CorridorGraph contracted = contract(graph, nodes);
+		if (contracted.splitParallel(nodes)) {
+			contracted = contract(graph, nodes);
+		}
+		return contracted;
+	}
+
+	/**
+	 * Contract every corridor between the rooms to keep
+	 * @param nodes DEAD or CORRIDOR for each room not kept, anything else for one kept;
+	 * numbered in place with the node of each kept room
+	 */
+	private static CorridorGraph contract(IndexedGraph graph, int[] nodes) {
+		int numRooms = graph.numNodes();
+		int kept = 0;
+		for (int u = 0; u < numRooms; u++) {
+			if (nodes[u] >= 0) {
+				nodes[u] = kept++;
+			}
+		}
+		int[] rooms = new int[kept];
+		for (int u = 0; u < numRooms; u++) {
+			if (nodes[u] >= 0) {
+				rooms[nodes[u]] = u;
+			}
+		}
+
+		int[] first = new int[kept + 1];
+		int capacity = 16;
+		int[] targets = new int[capacity];
+		int[] costs = new int[capacity];
+		int[] lengths = new int[capacity];
+		int[] sides = new int[capacity];
+		int count = 0;
+		for (int node = 0; node < kept; node++) {
+			first[node] = count;
+			int room = rooms[node];
+			int degree = graph.degree(room);
+			for (int i = 0; i < degree; i++) {
+				int previous = room;
+				int current = graph.neighbour(room, i);
+				if (nodes[current] == DEAD) {
+					continue;
+				}
+				// walk the corridor to the next kept room
+				int cost = graph.edgeType(room, i);
+				int length = 1;
+				while (nodes[current] == CORRIDOR) {
+					int side = onward(graph, nodes, current, previous);
+					cost += graph.edgeType(current, side);
+					previous = current;
+					current = graph.neighbour(current, side);
+					length++;
+				}
+				if (current == room) {
+					continue;
+				}
+				if (count == capacity) {
+					capacity *= 2;
+					targets = Arrays.copyOf(targets, capacity);
+					costs = Arrays.copyOf(costs, capacity);
+					lengths = Arrays.copyOf(lengths, capacity);
+					sides = Arrays.copyOf(sides, capacity);
+				}
+				targets[count] = nodes[current];
+				costs[count] = cost;
+				lengths[count] = length;
+				sides[count] = i;
+				count++;
+			}
+		}
+		first[kept] = count;
+		return new CorridorGraph(graph, rooms, nodes, first, Arrays.copyOf(targets, count),
+				Arrays.copyOf(costs, count), Arrays.copyOf(lengths, count), Arrays.copyOf(sides, count));
+	}
+
+	/**
+	 * returns the position of the side of a corridor room that does not lead
+	 * back to the room before it or into a dead end
+	 */
+	private static int onward(IndexedGraph graph, int[] nodes, int room, int previous) {
+		int side = 0;
+		while (true) {
+			int next = graph.neighbour(room, side);
+			if (next != previous && nodes[next] != DEAD) {
+				return side;
+			}
+			side++;
+		}
+	}
+
+	/**
+	 * Mark the first room of every corridor that joins the same two nodes as another edge
+	 * @param keep the node of each room, updated to keep the rooms marked
+	 * @return true if any room was marked
+	 */
+	private boolean splitParallel(int[] keep) {
+		boolean split = false;
+		for (int u = 0; u < rooms.length; u++) {
+			for (int e = first[u]; e < first[u + 1]; e++) {
+				for (int f = first[u]; f < e; f++) {
+					if (targets[f] == targets[e]) {
+						// an edge of length one has no room inside to keep, but then the other has
+						for (int g : new int[] {e, f}) {
+							if (lengths[g] > 1) {
+								keep[graph.neighbour(rooms[u], sides[g])] = 0;
+								split = true;
+							}
+						}
+					}
+				}
+			}
+		}
+		return split;
+	}
+
+	@Override
+	public int numNodes() {
+		return rooms.length;
+	}
+
+	@Override
+	public int degree(int u) {
+		return first[u + 1] - first[u];
+	}
+
+	@Override
+	public int neighbour(int u, int i) {
+		return targets[first[u] + i];
+	}
+
+	@Override
+	public int edgeType(int u, int i) {
+		return costs[first[u] + i];
+	}
+
+	/**
+	 * returns the node of a room
+	 * @param room the room
+	 * @return the node, or a negative number if the room is inside a corridor or was cut off with the dead ends
+	 */
+	public int node(int room) {
+		return nodes[room];
+	}
+
+	/**
+	 * returns the room of a node
+	 * @param u the node
+	 * @return the room
+	 */
+	public int room(int u) {
+		return rooms[u];
+	}
+
+	/**
+	 * Turn a path of this graph back into the rooms of the maze
+	 * @param path the nodes of a path, or null
+	 * @return the rooms of the path, or null if path is null
+	 */
+	public int[] expand(int[] path) {
+		if (path == null) {
+			return null;
+		}
+		if (path.length == 0) {
+			return path;
+		}
+		int total = 1;
+		int[] edges = new int[path.length - 1];
+		for (int i = 0; i + 1 < path.length; i++) {
+			edges[i] = edge(path[i], path[i + 1]);
+			total += lengths[edges[i]];
+		}
+		int[] result = new int[total];
+		int size = 0;
+		result[size++] = rooms[path[0]];
+		for (int i = 0; i < edges.length; i++) {
+			int previous = rooms[path[i]];
+			int current = graph.neighbour(previous, sides[edges[i]]);
+			result[size++] = current;
+			while (nodes[current] == CORRIDOR) {
+				int next = graph.neighbour(current, onward(graph, nodes, current, previous));
+				previous = current;
+				current = next;
+				result[size++] = current;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * returns the edge from node u to node v
+	 * @throws IllegalArgumentException if there is none
+	 */
+	private int edge(int u, int v) {
+		for (int e = first[u]; e < first[u + 1]; e++) {
+			if (targets[e] == v) {
+				return e;
+			}
+		}
+		throw new IllegalArgumentException("No edge from " + u + " to " + v);
+	}
+}
@@ -11,29 +11,26 @@ import java.awt.image.*;
 import javax.swing.*;
 import javax.imageio.*;
 import java.util.*;
-import java.lang.Thread;
 
-public class DrawMaze extends JFrame{
-  private Graphics display;    // Graphics object needed to draw
+public class DrawMaze extends JFrame implements PathDisplay{
+  private Graphics display;    // Graphics object needed to draw, onto the back buffer
   private Board panel;         // Panel containing map
+  private BufferedImage buffer;      // Back buffer the maze is drawn into, copied to the panel
+  private MazeRenderer renderer;     // Draws the cells of the maze from pre-drawn tiles
+  private Rectangle dirty;           // Part of the back buffer drawn since the panel was last told
   private int numNodes;       // Number of nodes in the labyrinth
   private int labWidth;      // Width of the labyrinth (in rooms)
   private int labLength;     // Length of the labyrinth (in rooms)
   private int roomSize;              //Length of the room in pixels
 
-  private char[][] lab;
+  private GridGraph grid;     // Rooms of the labyrinth, shared with the solver
 
-  private Color rockColor = new Color(80,70,50);
-  private Color wallColor = new Color(255,100,100);
+  private Color rockColor = MazeRenderer.ROCK_COLOR;
   private Color pathColor = new Color(255,0,0);
-  private Color entranceColor = new Color(100,100,100);
-  private Color exitColor = new Color(100,255,100);
-  private Color backColor = new Color(195,195,215);
-  private Color white = new Color(255,255,255);
-  private Color door = new Color(128,60,60);
+  private Color backColor = MazeRenderer.BACK_COLOR;
   private Color openDoor = new Color(255,255,255);
+  private Color visitedColor = new Color(255,200,0);
   private Color black = new Color(0,0,0);
-  private Color[] doorColors = new Color[10];
   
   private BufferedImage img, imgb, rock;
   private boolean imageFile = true;
@@ -43,268 +40,156 @@ public class DrawMaze extends JFrame{
   /* ============================= */
   public DrawMaze(String labFile) {
   /* ============================= */
-    BufferedReader input;
+    try {
+      draw(MazeFile.read(labFile));
+    }
+    catch (Exception e) {
+      System.out.println("Error opening file "+labFile);
+      labWidth = 1;
+      labLength = 1;
+      roomSize = 1;
+    }
+  }
+
+  /* Draws a maze that has already been read, sharing its rooms */
+  /* ============================= */
+  public DrawMaze(MazeFile maze) {
+  /* ============================= */
+    try {
+      draw(maze);
+    }
+    catch (Exception e) {
+      System.out.println("Error drawing the maze");
+      labWidth = 1;
+      labLength = 1;
+      roomSize = 1;
+    }
+  }
+
+  /* ============================= */
+  private void draw(MazeFile maze) {
+  /* ============================= */
     String name = "";
+
+    numNodes = 0;
+    panel = new Board();
+    getContentPane().add(panel);
+
+    grid = maze.getGraph();
+    roomSize = maze.getScale();
+    labWidth = grid.getWidth();
+    labLength = grid.getLength();
+    font = new Font("Serif", Font.PLAIN, roomSize/3);
     
-    doorColors[0] = Color.MAGENTA;
-    doorColors[1] = Color.BLUE;
-    doorColors[2] = Color.PINK;
-    doorColors[3] = new Color(80,225,80);
-    doorColors[4] = Color.GRAY;
-    doorColors[5] = new Color(50,200,200);
-    doorColors[6] = new Color(220,160,220);
-    doorColors[7] = new Color(200,100,100);
-    doorColors[8] = new Color(50,100,50);
-    doorColors[9] = new Color(100,100,255);  
-	
+    int coins = maze.getCoins();
+
+    numNodes = labWidth * labLength;
+
+    int off = 10;
+    if (roomSize < 40) off = 20;
+    setSize((2*labWidth)*roomSize+10,(2*labLength)*roomSize+roomSize+off);
+    setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+    buffer = new BufferedImage((2*labWidth)*roomSize+10,(2*labLength)*roomSize+roomSize,
+                               BufferedImage.TYPE_INT_RGB);
+    display = buffer.createGraphics();
+    display.setColor(panel.getBackground());
+    display.fillRect(0,0,buffer.getWidth(),buffer.getHeight());
+    panel.setImage(buffer);
+
     try {
-      numNodes = 0;
-      panel = new Board();
-      getContentPane().add(panel);
-      String line;
- 
-      input = new BufferedReader(new FileReader(labFile));
-
-      // Process first four lines of the file
-      roomSize = Integer.parseInt(input.readLine());
-      labWidth = Integer.parseInt(input.readLine());
-      labLength = Integer.parseInt(input.readLine());
-      font = new Font("Serif", Font.PLAIN, roomSize/3);
-      
-      line = input.readLine();  /* Ignore line with number of available keys */
-      int coins = Integer.parseInt(line);
-
-      numNodes = labWidth * labLength;
-
-      int off = 10;
-      if (roomSize < 40) off = 20;
-      setSize((2*labWidth)*roomSize+10,(2*labLength)*roomSize+roomSize+off);
-      setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
-      setVisible(true);
-      display = panel.getGraphics();
-
-      Thread clock = new Thread();
-      clock.sleep(2000);
-      display.setColor(backColor);
-      display.fillRect(0,0,(2*labWidth-1)*roomSize,(2*labLength-1)*roomSize);
-      display.setColor(rockColor);
-      display.drawRect(0,0,(2*labWidth-1)*roomSize,(2*labLength-1)*roomSize);
-      display.drawRect(1,1,(2*labWidth-1)*roomSize-2,(2*labLength-1)*roomSize-2);
-      display.drawRect(2,2,(2*labWidth-1)*roomSize-4,(2*labLength-1)*roomSize-4);
-      display.drawRect(3,3,(2*labWidth-1)*roomSize-6,(2*labLength-1)*roomSize-6);
-      
-      display.setFont(font);
       name = "person.gif";
       img = ImageIO.read(new File("person.gif"));
       name = "personb.gif";
       imgb = ImageIO.read(new File("personb.gif"));
       name = "rock3.jpg";
       rock = ImageIO.read(new File("rock3.jpg"));
-      drawMaze(input);
-      
-      Font largeFont = new Font("Serif",Font.PLAIN,roomSize/2);
-      display.setFont(largeFont);
-      display.setColor(black);
-      int offset = 10;
-      int offsety = 2;
-      if (roomSize < 30) offsety = 0;
-      if (coins == 0) display.drawString("No coins available",offset,2*labLength*roomSize+2);
-      else
-      	 display.drawString("Available coins : "+Integer.toString(coins),offset,2*labLength*roomSize+offsety);
-    }
-    catch (InterruptedException e) {
-      System.out.println("Error starting program");
+      renderer = new MazeRenderer(roomSize,rock,img.getWidth(),img.getHeight());
     }
     catch (IOException e) {
-	imageFile = false;
-	System.out.println("Cannot read image file: "+name);
-    }
-    catch (Exception e) {
-      System.out.println("Error opening file "+labFile);
-      labWidth = 1;
-      labLength = 1;
-      roomSize = 1;
+      imageFile = false;
+      System.out.println("Cannot read image file: "+name);
+      renderer = new MazeRenderer(roomSize,null,0,0);
     }
+
+    /* The right and bottom lines of the border lie just outside the maze, where the renderer does not draw */
+    display.setColor(rockColor);
+    display.drawRect(0,0,(2*labWidth-1)*roomSize,(2*labLength-1)*roomSize);
+    
+    display.setFont(font);
+    drawMaze(maze);
+    
+    Font largeFont = new Font("Serif",Font.PLAIN,roomSize/2);
+    display.setFont(largeFont);
+    display.setColor(black);
+    int offset = 10;
+    int offsety = 2;
+    if (roomSize < 30) offsety = 0;
+    if (coins == 0) display.drawString("No coins available",offset,2*labLength*roomSize+2);
+    else
+    	 display.drawString("Available coins : "+Integer.toString(coins),offset,2*labLength*roomSize+offsety);
+    setVisible(true);
   }
 
+ /* Reads the rest of a maze file, after its first four lines, and draws it */
  /* ================================================================= */
   public void drawMaze(BufferedReader input) {
   /* ================================================================= */
-     int  i, row = 0, col;
+     int  i, row = 0, node;
+     int start = 0, end = 0;
      String line ="";
+     GridGraph rooms = new GridGraph(labWidth,labLength);
 
-     // Open the file
      try {
-
-       lab = new char[2*labLength-1][2*labWidth-1];
-       // Read the labyrinth from the file
        for (;;) {
            line = input.readLine();
            if (line == null) {             // End of file
                input.close();
-               return;
+               break;
            }
 
-           /* Draw a row of the labyrinth */
-           for (i = 0, col = 0; i < line.length(); ++i) {
-	       lab[row][i] = line.charAt(i);
-	         switch (line.charAt(i)) {
-                  case 's': drawStart(i,row); 
-		                    ++col; break;
-                  case 'x': drawExit(i,row); 
-		                      ++col; break;
-                  case 'w': drawRock(i,row); break;
-                  case 'c': if ((row % 2) == 0) drawHorHall(i,row);
-                            else drawVerHall(i,row);
-                            break;
-		   case 'o': ++col; break;
-		   default: if (line.charAt(i) >= '0' && line.charAt(i) <= '9')
-						if ((row % 2) ==0) drawHorDoor(i,row,String.valueOf(line.charAt(i)));
-						else drawVertDoor(i,row,String.valueOf(line.charAt(i)));
-					else System.out.println("Invalid input file. Invalid character: "+line.charAt(i));
-                 }
-	   }
-           ++row; 
-
+           /* Link the rooms of a row of the labyrinth, the same way MazeFile.read does */
+           for (i = 0; i < line.length(); ++i) {
+             char c = line.charAt(i);
+             node = (row/2)*labWidth + i/2;
+             if ((row % 2) == 0 && (i % 2) == 0) {
+               if (c == 's') start = node;
+               else if (c == 'x') end = node;
+             }
+             else if ((row % 2) == 0 || (i % 2) == 0) {
+               int neighbour = (row % 2) == 0 ? node+1 : node+labWidth;
+               if (c == 'c') rooms.insertEdge(node,neighbour,0,"corridor");
+               else if (c >= '0' && c <= '9') rooms.insertEdge(node,neighbour,c-'0',"door");
+             }
+           }
+           ++row;
        }
      }
      catch (Exception e) {
         System.out.println("Error while processing this line of the input file:");
-		System.out.println(line);
+        System.out.println(line);
+        return;
      }
+     drawMaze(new MazeFile(roomSize,0,start,end,rooms));
    }
 
-
-  /* Draw a vertical door */
-  /* ================================================================= */
-  private void drawVertDoor(int x, int y, String label) {
-  /* ================================================================= */
-      display.setColor(backColor);
-      display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize);
-      display.setColor(doorColors[Integer.parseInt(label)]);
-      display.fillRect(x*roomSize,y*roomSize+roomSize/4,roomSize,roomSize/2);
-      display.setColor(white);
-      display.drawString(label,x*roomSize+(int)(0.4*roomSize),(int)(y*roomSize+0.6*roomSize));
-
-      display.setColor(rockColor);
-      //display.fillRect(x*roomSize,y*roomSize,roomSize/5,roomSize);
-      //display.fillRect(x*roomSize+4*roomSize/5,y*roomSize,roomSize/5,roomSize);
-
-      display.drawImage(rock,x*roomSize,y*roomSize,x*roomSize+roomSize/5,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);     
-      display.drawImage(rock,x*roomSize+4*roomSize/5,y*roomSize,(x+1)*roomSize,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);
-  }
-
-  /* Draw a harizontal door */
-  /* ================================================================= */
-  private void drawHorDoor(int x, int y, String label) {
-  /* ================================================================= */
-      display.setColor(backColor);
-      display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize);
-      display.setColor(doorColors[Integer.parseInt(label)]);
-      display.fillRect(x*roomSize+roomSize/4,y*roomSize,roomSize/2,roomSize);
-      display.setColor(white);
-      
-      display.drawString(label,x*roomSize+(int)(0.4*roomSize),(int)(y*roomSize+0.6*roomSize));      
-
-      display.setColor(rockColor);
-      //display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize/5);
-      //display.fillRect(x*roomSize,y*roomSize+4*roomSize/5,roomSize,roomSize/5);
-
-      display.drawImage(rock,x*roomSize,y*roomSize,(x+1)*roomSize,y*roomSize
-			+roomSize/5,1,1,img.getWidth(),img.getHeight(),null);  
-      display.drawImage(rock,x*roomSize,y*roomSize+4*roomSize/5,(x+1)*roomSize,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);
-  }
-
- /* Draw a horizontal passage */
- /* ================================================================= */
-  private void drawHorHall(int x, int y) {
-  /* ================================================================= */
-     //display.drawImage(wallImage,x*roomSize,y*roomSize,roomSize,roomSize,this);
-      display.setColor(backColor);
-      display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize);
-      display.setColor(rockColor);
-
-      //display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize/5);
-      //display.fillRect(x*roomSize,y*roomSize+4*roomSize/5,roomSize,roomSize/5);
-
-      display.drawImage(rock,x*roomSize,y*roomSize,(x+1)*roomSize,y*roomSize
-			+roomSize/5,1,1,img.getWidth(),img.getHeight(),null);  
-      display.drawImage(rock,x*roomSize,y*roomSize+4*roomSize/5,(x+1)*roomSize,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);
-  }
-
- /* Draw a vertical passage */
  /* ================================================================= */
-  private void drawVerHall(int x, int y) {
+  public void drawMaze(MazeFile maze) {
   /* ================================================================= */
-     //display.drawImage(wallImage,x*roomSize,y*roomSize,roomSize,roomSize,this);
-      display.setColor(backColor);
-      display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize);
-      display.setColor(rockColor);
-      //display.fillRect(x*roomSize,y*roomSize,roomSize/5,roomSize);
-      //display.fillRect(x*roomSize+4*roomSize/5,y*roomSize,roomSize/5,roomSize);
-
-      display.drawImage(rock,x*roomSize,y*roomSize,x*roomSize+roomSize/5,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);         
-      display.drawImage(rock,x*roomSize+4*roomSize/5,y*roomSize,(x+1)*roomSize,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);
-  }
-
-
- /* ================================================================= */
-  private void drawRock(int x, int y) {
-  /* ================================================================= */
-
-      display.drawImage(rock,x*roomSize,y*roomSize,(x+1)*roomSize,
-			(y+1)*roomSize,1,1,img.getWidth(),img.getHeight(),null);
-      //display.setColor(rockColor);
-      //display.fillRect(x*roomSize,y*roomSize,roomSize,roomSize);
-  }
+     grid = maze.getGraph();
+     startx = 2*(maze.getStart() % labWidth);
+     starty = 2*(maze.getStart() / labWidth);
+     endx = 2*(maze.getEnd() % labWidth);
+     endy = 2*(maze.getEnd() / labWidth);
+     /* The background, the border inside the maze and every room */
+     renderer.drawMaze(buffer,grid,maze.getStart(),maze.getEnd(),0,0);
+   }
 
 
   /* Draw the entrance room */
   /* ================================================================= */
   private void drawStart(int x, int y) {
   /* ================================================================= */
-    startx = x;
-    starty = y;
-
-    display.setColor(entranceColor);
-    display.fillRect(x*roomSize+2*roomSize/5,y*roomSize+roomSize/5,
-		     2*roomSize/5,3*roomSize/5);
-    int[] xcoor = {x*roomSize+2*roomSize/5, x*roomSize+roomSize/5,
-		   x*roomSize+roomSize/5, x*roomSize+2*roomSize/5};
-    int[] ycoor = {y*roomSize+roomSize/5, y*roomSize+roomSize/10,
-		   y*roomSize+7*roomSize/10,y*roomSize+4*roomSize/5};
-    display.setColor(door);
-    display.fillPolygon(xcoor,ycoor,4);
-    display.setColor(wallColor);
-    display.fillOval(x*roomSize+2*roomSize/10,y*roomSize+4*roomSize/10,
-             roomSize/10,roomSize/10);
-  }
-
-  /* Draw the exit */
-  /* ================================================================= */
-  private void drawExit(int x, int y) {
-  /* ================================================================= */
-    endx = x;
-    endy = y;
-
-    display.setColor(exitColor);
-    display.fillRect(x*roomSize+2*roomSize/5,y*roomSize+roomSize/5,
-		     2*roomSize/5,3*roomSize/5);
-    int[] xcoor = {x*roomSize+2*roomSize/5, x*roomSize+roomSize/5,
-		   x*roomSize+roomSize/5, x*roomSize+2*roomSize/5};
-    int[] ycoor = {y*roomSize+roomSize/5, y*roomSize+roomSize/10,
-		   y*roomSize+7*roomSize/10,y*roomSize+4*roomSize/5};
-    display.setColor(door);
-    display.fillPolygon(xcoor,ycoor,4);
-    display.setColor(wallColor);
-    display.fillOval(x*roomSize+2*roomSize/10,y*roomSize+4*roomSize/10,
-             roomSize/10,roomSize/10);  
+    renderer.drawCell(buffer,'s',x,y);
   }
 
   /* ========================================================== */
@@ -315,6 +200,7 @@ public class DrawMaze extends JFrame{
         display.setColor(backColor);
         display.fillRect(x,y,roomSize,roomSize);
       }
+      markDirty(x,y,roomSize,roomSize);
   }
 
   /* ========================================================== */
@@ -322,6 +208,8 @@ public class DrawMaze extends JFrame{
   /* ========================================================== */
     	int offset = roomSize/5;
 
+    	markDirty(x,y,roomSize,roomSize);
+
     	if ((x == (endx * roomSize)) && (y == (endy * roomSize))) {
     		if (right)
     			display.drawImage(img,x+2*roomSize/5,y+roomSize/5,x+4*roomSize/5,
@@ -342,9 +230,10 @@ public class DrawMaze extends JFrame{
 
   /* Draws an edge of the solution */
   /* ========================================================== */
-  private void drawEdge(int u, int v) {
+  private void drawEdge(int u, int v, boolean person) {
   /* ========================================================== */
-  /* Input: edge (uv) */
+  /* Input: edge (uv), and whether to draw the person at its end; a person
+     drawn in the middle of a batch would be erased by the next edge anyway */
    
       int x,  y, us, vs, width, height, offset, labx, laby;
 
@@ -367,16 +256,16 @@ public class DrawMaze extends JFrame{
        height = 3;
        labx = 2*(u % labWidth)+1;
        laby = 2*(u / labWidth);
-       if (Character.isDigit(lab[laby][labx])) 
-	       drawOpenHorizDoor(labx,laby,Character.toString(lab[laby][labx]));
+       if (grid.right(u) >= GridGraph.DOOR) 
+	       drawOpenHorizDoor(labx,laby,Integer.toString(grid.right(u)-GridGraph.DOOR));
      }
      else if (v == (u+labWidth)) {
        width = 3;
        height = roomSize*2;
        labx = 2*(u % labWidth);
        laby = 2*(u / labWidth)+1;
-       if (Character.isDigit(lab[laby][labx]) )
-	        drawOpenVertDoor(labx,laby,Character.toString(lab[laby][labx]));
+       if (grid.lower(u) >= GridGraph.DOOR)
+	        drawOpenVertDoor(labx,laby,Integer.toString(grid.lower(u)-GridGraph.DOOR));
      }
      else {
         System.out.println("Invalid edge ("+u+","+v+")");
@@ -385,8 +274,10 @@ public class DrawMaze extends JFrame{
 
      display.setColor(pathColor);
      display.fillRect(x,y,width,height);
+     markDirty(x,y,width,height);
+     markDirty(labx*roomSize,laby*roomSize,roomSize,roomSize);
 
-     if (imageFile) 
+     if (imageFile && person) 
 	 if ((us % labWidth) <= (vs % labWidth))
 	     drawPerson((vs % labWidth)*2*roomSize,(vs / labWidth)*2*roomSize,true);
 	 else drawPerson((vs % labWidth)*2*roomSize,(vs / labWidth)*2*roomSize,false);
@@ -416,6 +307,62 @@ public class DrawMaze extends JFrame{
   /* ==================================== */
   public void drawEdge (GraphNode u, GraphNode v) {
   /* ==================================== */
-      if (u != v) drawEdge(u.getName(),v.getName());
+      if (u == v) return;
+      synchronized (buffer) {
+        drawEdge(u.getName(),v.getName(),true);
+        repaintDirty();
+      }
+  }
+
+  /* Draws a batch of edges of the solution with one repaint, the person only at the end */
+  /* ==================================== */
+  public void drawEdges(int[] edges, int count) {
+  /* ==================================== */
+  /* Input: count edges, edges[2i] to edges[2i+1] */
+      if (count <= 0) return;
+      synchronized (buffer) {
+        for (int i = 0; i < count; i++)
+          if (edges[2*i] != edges[2*i+1])
+            drawEdge(edges[2*i],edges[2*i+1],i == count-1);
+        repaintDirty();
+      }
+  }
+
+  /* Marks rooms a search has visited with a dot, with one repaint */
+  /* ==================================== */
+  public void drawVisited(int[] rooms, int count) {
+  /* ==================================== */
+      int size = Math.max(1,roomSize/3);
+      int offset = (roomSize-size)/2;
+      synchronized (buffer) {
+        display.setColor(visitedColor);
+        for (int i = 0; i < count; i++) {
+          if (rooms[i] < 0 || rooms[i] >= numNodes) continue;
+          int x = 2*(rooms[i] % labWidth), y = 2*(rooms[i] / labWidth);
+          if ((x == startx && y == starty) || (x == endx && y == endy)) continue;
+          display.fillRect(x*roomSize+offset,y*roomSize+offset,size,size);
+          markDirty(x*roomSize+offset,y*roomSize+offset,size,size);
+        }
+        repaintDirty();
+      }
+  }
+
+  /* Remember that part of the back buffer has changed */
+  /* ========================================================== */
+  private void markDirty(int x, int y, int width, int height) {
+  /* ========================================================== */
+      Rectangle area = new Rectangle(x,y,width,height);
+      if (dirty == null) dirty = area;
+      else dirty.add(area);
+  }
+
+  /* Copy the changed part of the back buffer to the screen; called holding the buffer lock */
+  /* ========================================================== */
+  private void repaintDirty() {
+  /* ========================================================== */
+      if (dirty != null) {
+        panel.repaint(dirty);
+        dirty = null;
+      }
   }
 }
@@ -0,0 +1,113 @@
+import java.util.Arrays;
+
+/**
+ * An open addressing hash map from an unordered pair of node names to the
+ * edge joining them. Keys are packed into a long as (min << 32) | max and
+ * probed linearly, so a lookup costs no allocation.
+ */
+public class EdgeIndex {
+
+	// marks an empty slot; no pair of non-negative names packs to this
+	private static final long EMPTY = -1L;
+
+	private long[] keys;
+	private GraphEdge[] values;
+	private int size;
+
+	/**
+	 * Constructor for the index
+	 * @param expectedEdges the number of edges the index should hold without growing
+	 */
+	public EdgeIndex(int expectedEdges) {
+		int capacity = Integer.highestOneBit(Math.max(4, expectedEdges) * 2 - 1) << 1;
+		keys = new long[capacity];
+		Arrays.fill(keys, EMPTY);
+		values = new GraphEdge[capacity];
+	}
+
+	/**
+	 * Add an edge unless its endpoints are already joined
+	 * @param u the first node
+	 * @param v the second node
+	 * @param edge the edge joining them
+	 * @return true if the edge was added, false if u and v already had an edge
+	 */
+	public boolean add(int u, int v, GraphEdge edge) {
+		long key = key(u, v);
+		int slot = slot(key);
+		if (keys[slot] == key) {
+			return false;
+		}
+		// only grow for an edge that is really added
+		if (2 * (size + 1) > keys.length) {
+			grow();
+			slot = slot(key);
+		}
+		keys[slot] = key;
+		values[slot] = edge;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Get the edge joining two nodes
+	 * @param u the first node
+	 * @param v the second node
+	 * @return the edge, or null if there is none
+	 */
+	public GraphEdge get(int u, int v) {
+		long key = key(u, v);
+		int slot = slot(key);
+		return keys[slot] == key ? values[slot] : null;
+	}
+
+	/**
+	 * returns the number of edges in the index
+	 * @return the number of edges
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Find the slot holding a key, or the empty slot where it would go
+	 */
+	private int slot(long key) {
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		while (keys[slot] != EMPTY && keys[slot] != key) {
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Double the table and reinsert every entry
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		GraphEdge[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		Arrays.fill(keys, EMPTY);
+		values = new GraphEdge[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != EMPTY) {
+				int slot = slot(oldKeys[i]);
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	private static long key(int u, int v) {
+		return ((long) Math.min(u, v) << 32) | Math.max(u, v);
+	}
+
+	/**
+	 * Spread the key bits so neighbouring pairs land far apart
+	 */
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
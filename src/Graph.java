@@ -4,7 +4,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-public class Graph implements GraphADT {
+public class Graph implements GraphADT, IndexedGraph {
 	
 //	Create an adjacency list or an adjacency matrix, a list is probably easier
 	/**
@@ -16,12 +16,29 @@ public class Graph implements GraphADT {
 	 * The edges of the graph
 	 */
 	private Map<Integer, List<GraphEdge>> edges = new HashMap<>();
+	/**
+	 * The edges keyed by their endpoints, or null if lookups scan the adjacency lists
+	 */
+	private EdgeIndex index;
 
 	/**
 	 * Constructor for the graph
 	 * @param n the number of nodes
 	 */
 	public Graph(int n) {
+		this(n, false);
+	}
+
+	/**
+	 * Constructor for the graph
+	 * @param n the number of nodes
+	 * @param indexEdges true to keep an edge index, making getEdge and areAdjacent
+	 * constant time and rejecting a second edge between the same nodes
+	 */
+	public Graph(int n, boolean indexEdges) {
+		if (indexEdges) {
+			index = new EdgeIndex(n);
+		}
 //		initialize your representation with empty adjacency lists
 		//initialize the nodes
 		for (int i = 0; i < n; i++) {
@@ -35,7 +52,7 @@ public class Graph implements GraphADT {
 	 * @param nodev the second node
 	 * @param type the type of the edge
 	 * @param label the label of the edge
-	 * @throws GraphException if the edge is invalid
+	 * @throws GraphException if a node does not exist, or the graph is indexed and the nodes are already joined
 	 */
 	@Override
 	public void insertEdge(GraphNode nodeu, GraphNode nodev, int type, String label) throws GraphException {
@@ -48,6 +65,9 @@ public class Graph implements GraphADT {
 			throw new GraphException("Node does not exist");
 		}
 		GraphEdge edge = new GraphEdge(nodeu, nodev, type, label);
+		if (index != null && !index.add(nodeu.getName(), nodev.getName(), edge)) {
+			throw new GraphException("Edge already exists");
+		}
 		//add the edge to the list for the first node
 		edges.get(nodeu.getName()).add(edge);
 		//add the edge to the list for the second node
@@ -95,6 +115,9 @@ public class Graph implements GraphADT {
 		if (!nodes.containsKey(u.getName()) || !nodes.containsKey(v.getName())) {
 			throw new GraphException("Node does not exist");
 		}
+		if (index != null) {
+			return index.get(u.getName(), v.getName());
+		}
 		for (GraphEdge edge : edges.get(u.getName())) {
 			if (edge.firstEndpoint().equals(v) || edge.secondEndpoint().equals(v)) {
 				return edge;
@@ -116,6 +139,9 @@ public class Graph implements GraphADT {
 		if (!nodes.containsKey(u.getName()) || !nodes.containsKey(v.getName())) {
 			throw new GraphException("Node does not exist");
 		}
+		if (index != null) {
+			return index.get(u.getName(), v.getName()) != null;
+		}
 		for (GraphEdge edge : edges.get(u.getName())) {
 			if (edge.firstEndpoint().equals(v) || edge.secondEndpoint().equals(v)) {
 				return true;
@@ -124,4 +150,47 @@ public class Graph implements GraphADT {
 		return false;
 	}
 
+	/**
+	 * returns the number of nodes
+	 * @return the number of nodes
+	 */
+	@Override
+	public int numNodes() {
+		return nodes.size();
+	}
+
+	/**
+	 * returns the number of edges incident on a node
+	 * @param u the name of the node
+	 * @return the degree of the node
+	 */
+	@Override
+	public int degree(int u) {
+		return edges.get(u).size();
+	}
+
+	/**
+	 * returns the node at the other end of an incident edge
+	 * @param u the name of the node
+	 * @param i the position of the edge in the adjacency list of u
+	 * @return the name of the neighbour
+	 */
+	@Override
+	public int neighbour(int u, int i) {
+		GraphEdge edge = edges.get(u).get(i);
+		int first = edge.firstEndpoint().getName();
+		return first == u ? edge.secondEndpoint().getName() : first;
+	}
+
+	/**
+	 * returns the type of an incident edge
+	 * @param u the name of the node
+	 * @param i the position of the edge in the adjacency list of u
+	 * @return the type of the edge
+	 */
+	@Override
+	public int edgeType(int u, int i) {
+		return edges.get(u).get(i).getType();
+	}
+
 }
@@ -22,5 +22,16 @@ public class GraphNode {
 	public int getName() {
 		return this.name;
 	}
+
+	//nodes are identified by name, so views handed out by different graphs compare equal
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof GraphNode && ((GraphNode) other).name == this.name;
+	}
+
+	@Override
+	public int hashCode() {
+		return Integer.hashCode(this.name);
+	}
 	
 }
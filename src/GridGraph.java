@@ -0,0 +1,507 @@
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A GraphADT for rectangular mazes whose edges only join rooms that are next
+ * to each other, where room (row, col) is node row * width + col.
+ *
+ * Nothing but one byte per room is stored: the low nibble describes the link
+ * to the room on the right and the high nibble the link to the room below,
+ * using the codes below. Edges and adjacency are computed from those bytes,
+ * and GraphNode and GraphEdge views are created on demand.
+ *
+ * The bytes may live outside the heap, for example in a read-only mapping
+ * of a binary maze file (see MazeFile). Such a graph can be searched but
+ * not changed.
+ */
+public class GridGraph implements GraphADT, IndexedGraph {
+
+	// link codes stored in each nibble; a door costing d coins is DOOR + d
+	static final int WALL = 0;
+	static final int CORRIDOR = 1;
+	static final int DOOR = 2;
+	// the largest door cost a nibble can hold
+	static final int MAX_DOOR = 9;
+
+	/**
+	 * The width of the maze in rooms
+	 */
+	private final int width;
+	/**
+	 * The length of the maze in rooms
+	 */
+	private final int length;
+	/**
+	 * The number of rooms
+	 */
+	private final int numNodes;
+	/**
+	 * The links of every room to its right and lower neighbours, one byte per room from index 0
+	 */
+	private final ByteBuffer cells;
+	/**
+	 * The same bytes when they are in a writable heap array, which is faster to read, otherwise null
+	 */
+	private final byte[] array;
+	/**
+	 * The mark bit of every node, allocated when the first node is marked
+	 */
+	private long[] marked;
+
+	/**
+	 * Constructor for the graph; every room starts walled in
+	 * @param width the width of the maze in rooms
+	 * @param length the length of the maze in rooms
+	 */
+	public GridGraph(int width, int length) {
+		this(width, length, ByteBuffer.allocate(width * length));
+	}
+
+	/**
+	 * Constructor for a graph over existing room bytes, which are used in place, not copied
+	 * @param width the width of the maze in rooms
+	 * @param length the length of the maze in rooms
+	 * @param cells one byte per room from index 0; if read-only, so is the graph
+	 */
+	public GridGraph(int width, int length, ByteBuffer cells) {
+		this.width = width;
+		this.length = length;
+		this.numNodes = width * length;
+		this.cells = cells;
+		array = cells.hasArray() && cells.arrayOffset() == 0 ? cells.array() : null;
+	}
+
+	/**
+	 * Insert an edge into the graph
+	 * @param nodeu the first node
+	 * @param nodev the second node
+	 * @param type the type of the edge
+	 * @param label the label of the edge
+	 * @throws GraphException if either node does not exist, the nodes are not
+	 * neighbours in the grid, they are already joined, or the edge cannot be stored
+	 */
+	@Override
+	public void insertEdge(GraphNode nodeu, GraphNode nodev, int type, String label) throws GraphException {
+		insertEdge(nodeu.getName(), nodev.getName(), type, label);
+	}
+
+	/**
+	 * Insert an edge between two nodes given by name, without creating node views
+	 * @param u the first node
+	 * @param v the second node
+	 * @param type the type of the edge
+	 * @param label the label of the edge
+	 * @throws GraphException if the edge is invalid, see insertEdge(GraphNode, GraphNode, int, String),
+	 * or the graph is read-only
+	 */
+	public void insertEdge(int u, int v, int type, String label) throws GraphException {
+		checkWritable();
+		checkNode(u);
+		checkNode(v);
+		if (direction(u, v) < 0) {
+			throw new GraphException("Nodes are not neighbours in the grid");
+		}
+		if (link(u, v) != WALL) {
+			throw new GraphException("Edge already exists");
+		}
+		setLink(u, v, code(type, label));
+	}
+
+	/**
+	 * Get a node from the graph
+	 * @param u the name of the node
+	 * @return a view of the node
+	 * @throws GraphException if the node does not exist
+	 */
+	@Override
+	public GraphNode getNode(int u) throws GraphException {
+		checkNode(u);
+		return new NodeView(u);
+	}
+
+	/**
+	 * Get the edges incident on a node, in the order up, left, right, down
+	 * @param u the node
+	 * @return the edges incident on the node
+	 * @throws GraphException if the node does not exist
+	 */
+	@Override
+	public Iterator<GraphEdge> incidentEdges(GraphNode u) throws GraphException {
+		checkNode(u);
+		int node = u.getName();
+		return new Iterator<GraphEdge>() {
+			// the next direction to look at, 0 to 3
+			private int direction = advance(0);
+
+			private int advance(int from) {
+				while (from < 4 && step(node, from) < 0) {
+					from++;
+				}
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return direction < 4;
+			}
+
+			@Override
+			public GraphEdge next() {
+				if (direction >= 4) {
+					throw new NoSuchElementException();
+				}
+				GraphEdge edge = edgeView(node, step(node, direction));
+				direction = advance(direction + 1);
+				return edge;
+			}
+		};
+	}
+
+	/**
+	 * Get an edge between two nodes
+	 * @param u the first node
+	 * @param v the second node
+	 * @return the edge between the nodes, or null if they are not adjacent
+	 * @throws GraphException if either node does not exist
+	 */
+	@Override
+	public GraphEdge getEdge(GraphNode u, GraphNode v) throws GraphException {
+		checkNode(u);
+		checkNode(v);
+		if (link(u.getName(), v.getName()) == WALL) {
+			return null;
+		}
+		return edgeView(u.getName(), v.getName());
+	}
+
+	/**
+	 * Check if two nodes are adjacent
+	 * @param u the first node
+	 * @param v the second node
+	 * @return true if the nodes are adjacent, false otherwise
+	 * @throws GraphException if either node does not exist
+	 */
+	@Override
+	public boolean areAdjacent(GraphNode u, GraphNode v) throws GraphException {
+		checkNode(u);
+		checkNode(v);
+		return link(u.getName(), v.getName()) != WALL;
+	}
+
+	/**
+	 * returns the width of the maze in rooms
+	 * @return the width
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * returns the length of the maze in rooms
+	 * @return the length
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * returns true if the graph cannot be changed
+	 * @return true if the room bytes are read-only
+	 */
+	public boolean isReadOnly() {
+		return cells.isReadOnly();
+	}
+
+	/**
+	 * returns the room bytes, one per room from index 0, without copying them
+	 * @return a read-only view of the bytes
+	 */
+	ByteBuffer cells() {
+		ByteBuffer view = cells.asReadOnlyBuffer();
+		view.limit(numNodes);
+		view.position(0);
+		return view;
+	}
+
+	/**
+	 * returns the number of nodes
+	 * @return the number of nodes
+	 */
+	@Override
+	public int numNodes() {
+		return numNodes;
+	}
+
+	/**
+	 * returns the number of edges incident on a node
+	 * @param u the name of the node
+	 * @return the degree of the node
+	 */
+	@Override
+	public int degree(int u) {
+		int degree = 0;
+		for (int direction = 0; direction < 4; direction++) {
+			if (step(u, direction) >= 0) {
+				degree++;
+			}
+		}
+		return degree;
+	}
+
+	/**
+	 * returns the node at the other end of an incident edge
+	 * @param u the name of the node
+	 * @param i the position of the edge in the order up, left, right, down
+	 * @return the name of the neighbour
+	 */
+	@Override
+	public int neighbour(int u, int i) {
+		return step(u, openDirection(u, i));
+	}
+
+	/**
+	 * returns the type of an incident edge
+	 * @param u the name of the node
+	 * @param i the position of the edge in the order up, left, right, down
+	 * @return the type of the edge
+	 */
+	@Override
+	public int edgeType(int u, int i) {
+		int code;
+		switch (openDirection(u, i)) {
+			case 0:
+				code = lower(u - width);
+				break;
+			case 1:
+				code = right(u - 1);
+				break;
+			case 2:
+				code = right(u);
+				break;
+			default:
+				code = lower(u);
+		}
+		return code >= DOOR ? code - DOOR : 0;
+	}
+
+	/**
+	 * Find the direction of the i-th open link of u
+	 */
+	private int openDirection(int u, int i) {
+		int seen = 0;
+		for (int direction = 0; direction < 4; direction++) {
+			if (step(u, direction) >= 0 && seen++ == i) {
+				return direction;
+			}
+		}
+		throw new IndexOutOfBoundsException("Node " + u + " has no edge " + i);
+	}
+
+	/**
+	 * Find which way v lies from u
+	 * @return 0 if v is above u, 1 if left, 2 if right, 3 if below, -1 if they are not neighbours
+	 */
+	private int direction(int u, int v) {
+		if (v == u - width) {
+			return 0;
+		} else if (v == u - 1 && u % width != 0) {
+			return 1;
+		} else if (v == u + 1 && v % width != 0) {
+			return 2;
+		} else if (v == u + width) {
+			return 3;
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the neighbour of u in a direction
+	 * @param direction 0 for up, 1 for left, 2 for right, 3 for down
+	 * @return the neighbour, or -1 if there is no open link that way
+	 */
+	private int step(int u, int direction) {
+		int v;
+		switch (direction) {
+			case 0:
+				v = u - width;
+				return v >= 0 && lower(v) != WALL ? v : -1;
+			case 1:
+				v = u - 1;
+				return u % width != 0 && right(v) != WALL ? v : -1;
+			case 2:
+				v = u + 1;
+				return v % width != 0 && right(u) != WALL ? v : -1;
+			default:
+				v = u + width;
+				return v < numNodes && lower(u) != WALL ? v : -1;
+		}
+	}
+
+	/**
+	 * returns the link code between two nodes, WALL if they are not neighbours
+	 */
+	private int link(int u, int v) {
+		switch (direction(u, v)) {
+			case 0:
+				return lower(v);
+			case 1:
+				return right(v);
+			case 2:
+				return right(u);
+			case 3:
+				return lower(u);
+			default:
+				return WALL;
+		}
+	}
+
+	/**
+	 * Store the link code between two neighbouring nodes
+	 */
+	private void setLink(int u, int v, int code) {
+		int low = Math.min(u, v);
+		int direction = direction(u, v);
+		if (direction == 1 || direction == 2) {
+			cells.put(low, (byte) ((cell(low) & 0xf0) | code));
+		} else {
+			cells.put(low, (byte) ((cell(low) & 0x0f) | (code << 4)));
+		}
+	}
+
+	private int cell(int u) {
+		return array != null ? array[u] : cells.get(u);
+	}
+
+	/**
+	 * returns the code of the link from a room to the one on its right
+	 */
+	int right(int u) {
+		return cell(u) & 0x0f;
+	}
+
+	/**
+	 * returns the code of the link from a room to the one below it
+	 */
+	int lower(int u) {
+		return (cell(u) >> 4) & 0x0f;
+	}
+
+	/**
+	 * returns the link code for an edge type and label
+	 * @throws GraphException if the grid cannot store such an edge
+	 */
+	private static int code(int type, String label) throws GraphException {
+		if ("corridor".equals(label) && type == 0) {
+			return CORRIDOR;
+		}
+		if ("door".equals(label) && type >= 0 && type <= MAX_DOOR) {
+			return DOOR + type;
+		}
+		throw new GraphException("Edge cannot be stored in a grid: " + label + " " + type);
+	}
+
+	/**
+	 * Create the view of the edge between two adjacent nodes; the smaller node is the first endpoint
+	 */
+	private GraphEdge edgeView(int u, int v) {
+		int low = Math.min(u, v);
+		int high = Math.max(u, v);
+		return new EdgeView(new NodeView(low), new NodeView(high));
+	}
+
+	private void checkNode(GraphNode u) throws GraphException {
+		checkNode(u.getName());
+	}
+
+	private void checkNode(int u) throws GraphException {
+		if (u < 0 || u >= numNodes) {
+			throw new GraphException("Node does not exist");
+		}
+	}
+
+	private void checkWritable() throws GraphException {
+		if (cells.isReadOnly()) {
+			throw new GraphException("Graph is read only");
+		}
+	}
+
+	/**
+	 * A node of this graph. Its mark is kept in the graph's bitset.
+	 */
+	private class NodeView extends GraphNode {
+
+		NodeView(int name) {
+			super(name);
+		}
+
+		@Override
+		public void mark(boolean mark) {
+			int name = getName();
+			if (marked == null) {
+				if (!mark) {
+					return;
+				}
+				marked = new long[(numNodes + 63) >>> 6];
+			}
+			if (mark) {
+				marked[name >>> 6] |= 1L << name;
+			} else {
+				marked[name >>> 6] &= ~(1L << name);
+			}
+		}
+
+		@Override
+		public boolean isMarked() {
+			int name = getName();
+			return marked != null && (marked[name >>> 6] & (1L << name)) != 0;
+		}
+	}
+
+	/**
+	 * An edge of this graph. Reads and writes go to the link nibble.
+	 */
+	private class EdgeView extends GraphEdge {
+
+		EdgeView(GraphNode first, GraphNode second) {
+			super(first, second, 0, null);
+		}
+
+		private int code() {
+			return link(firstEndpoint().getName(), secondEndpoint().getName());
+		}
+
+		@Override
+		public int getType() {
+			int code = code();
+			return code >= DOOR ? code - DOOR : 0;
+		}
+
+		@Override
+		public void setType(int newType) {
+			try {
+				// a corridor only stays a corridor while it is free
+				String label = newType == 0 ? getLabel() : "door";
+				checkWritable();
+				setLink(firstEndpoint().getName(), secondEndpoint().getName(), GridGraph.code(newType, label));
+			} catch (GraphException e) {
+				throw new IllegalArgumentException(e.getMessage());
+			}
+		}
+
+		@Override
+		public String getLabel() {
+			return code() == CORRIDOR ? "corridor" : "door";
+		}
+
+		@Override
+		public void setLabel(String newLabel) {
+			try {
+				checkWritable();
+				setLink(firstEndpoint().getName(), secondEndpoint().getName(), GridGraph.code(getType(), newLabel));
+			} catch (GraphException e) {
+				throw new IllegalArgumentException(e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,22 @@
+/**
+ * A graph whose adjacency can be read by node name and position without
+ * creating node or edge objects, for searches that must not allocate per step.
+ *
+ * Position i of node u describes the same edge as the (i+1)-th edge returned
+ * by incidentEdges for u, so a search over positions visits edges in exactly
+ * the order a search over the GraphADT iterators would.
+ */
+public interface IndexedGraph {
+
+  /* Returns the number of nodes; nodes are named 0 .. numNodes()-1. */
+  public int numNodes();
+
+  /* Returns the number of edges incident on node u. */
+  public int degree(int u);
+
+  /* Returns the node at the other end of the i-th edge incident on node u. */
+  public int neighbour(int u, int i);
+
+  /* Returns the type of the i-th edge incident on node u. */
+  public int edgeType(int u, int i);
+}
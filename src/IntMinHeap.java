@@ -0,0 +1,99 @@
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int values ordered by long keys, kept in two parallel
+ * primitive arrays so pushing and popping allocate nothing once it has grown.
+ * Values are not indexed, so searches push a value again instead of
+ * decreasing its key and skip stale entries when they are popped.
+ */
+public class IntMinHeap {
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+
+	/**
+	 * Constructor for the heap
+	 * @param capacity the number of entries it can hold before growing
+	 */
+	public IntMinHeap(int capacity) {
+		keys = new long[Math.max(capacity, 16)];
+		values = new int[keys.length];
+	}
+
+	/**
+	 * Add a value
+	 * @param key the key to order by
+	 * @param value the value
+	 */
+	public void push(long key, int value) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			keys[i] = keys[parent];
+			values[i] = values[parent];
+			i = parent;
+		}
+		keys[i] = key;
+		values[i] = value;
+	}
+
+	/**
+	 * returns the smallest key
+	 * @return the smallest key
+	 */
+	public long minKey() {
+		return keys[0];
+	}
+
+	/**
+	 * Remove the value with the smallest key
+	 * @return the value
+	 */
+	public int pop() {
+		int top = values[0];
+		size--;
+		long key = keys[size];
+		int value = values[size];
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			keys[i] = keys[child];
+			values[i] = values[child];
+			i = child;
+		}
+		keys[i] = key;
+		values[i] = value;
+		return top;
+	}
+
+	/**
+	 * returns true if the heap is empty
+	 * @return true if the heap is empty
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * returns the number of entries
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+}
@@ -1,24 +1,73 @@
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 public class Maze {
+	// mazes with more rooms than this are stored in a GridGraph by default
+	static final int LARGE_MAZE_THRESHOLD = 1 << 16;
+
+	/**
+	 * The ways a maze can be stored
+	 */
+	public enum Representation {
+		// a Graph, with one object per node and edge
+		ADJACENCY_LIST,
+		// a CompactGraph, with primitive adjacency arrays
+		COMPACT,
+		// a GridGraph, with one byte per room
+		GRID
+	}
+
+	/**
+	 * The ways a maze can be solved
+	 */
+	public enum Strategy {
+		// depth first, taking the first route found; each (room, coins) state is explored once
+		DEPTH_FIRST,
+		// depth first over every simple route, in the order of the original recursive search
+		BACKTRACKING,
+		// breadth first, for the route through the fewest rooms
+		FEWEST_ROOMS,
+		// Dijkstra, for the route spending the fewest coins
+		FEWEST_COINS,
+		// A* with the Manhattan distance to the exit, for the route through the fewest rooms
+		A_STAR,
+		// breadth first with each level expanded on the common ForkJoinPool, for the route through the fewest rooms
+		PARALLEL_FEWEST_ROOMS,
+		// breadth first from both the entrance and the exit, meeting in the middle
+		BIDIRECTIONAL
+	}
+
 	// the graph of the maze
-	private Graph graph;
+	private GraphADT graph;
+	// how the graph is stored, null to pick by size
+	private Representation representation;
+	// the scale factor for drawing
+	private int scale;
 	// The starting node
 	private int start;
 	// The end node
 	private int end;
+	// The number of rooms in a row
+	private int width;
 	// The number of coins
 	private int coins;
-	//the path
-	private List<GraphNode> path;
 	//the number of coins collected
 	private int coinsCollected;
+	// nanoseconds spent reading the file and finishing the graph
+	private long parseNanos;
+	private long buildNanos;
+	// the cheapest routes from every room to the exit, built by the first route query
+	private volatile RouteTree exitRoutes;
+	// whether searches that allow it run over the contracted corridors
+	private volatile boolean contractCorridors;
+	// the graph with its corridors contracted, built by the first search that uses it
+	private volatile CorridorGraph corridors;
 
 	/**
 	 * Constructor for the maze
@@ -27,13 +76,22 @@ public class Maze {
 	 */
 
 	public Maze(String inputFile) throws MazeException {
-		//initialize the path
-		path = new ArrayList<>();
+		this(inputFile, null);
+	}
+
+	/**
+	 * Constructor for the maze
+	 * @param inputFile the input file, in the text format or the binary format of MazeFile;
+	 * a binary file is always mapped as a read-only GridGraph
+	 * @param representation how to store the graph of a text file, or null to pick by size
+	 * @throws MazeException if the maze is invalid
+	 */
+	public Maze(String inputFile, Representation representation) throws MazeException {
+		this.representation = representation;
 		//initialize the coins collected
 		coinsCollected = 0;
 		try {
-			BufferedReader inputReader = new BufferedReader(new FileReader(new File(inputFile)));
-			readInput(inputReader);
+			readInput(inputFile);
 		} catch (IOException | GraphException e) {
 			throw new MazeException("Error reading maze file");
 		}
@@ -41,137 +99,522 @@ public class Maze {
 	}
 
 	/**
-	 * returns the graph
+	 * Constructor for a maze that has already been read, sharing its graph
+	 * @param maze the maze, as read by MazeFile.read
+	 * @throws MazeException if the maze is invalid
+	 */
+	public Maze(MazeFile maze) throws MazeException {
+		this(maze, null);
+	}
+
+	/**
+	 * Constructor for a maze that has already been read
+	 * @param maze the maze, as read by MazeFile.read
+	 * @param representation how to store the graph, or null to pick by size as for a text file;
+	 * a GRID maze shares the graph of the MazeFile, any other is copied from it
+	 * @throws MazeException if the maze is invalid
+	 */
+	public Maze(MazeFile maze, Representation representation) throws MazeException {
+		this.representation = representation;
+		coinsCollected = 0;
+		try {
+			load(maze);
+		} catch (GraphException e) {
+			throw new MazeException("Error reading maze file");
+		}
+	}
+
+	/**
+	 * returns the graph, when the maze is stored as a Graph; small mazes are
+	 * unless another representation was asked for
 	 * @return the graph
+	 * @throws IllegalStateException if the maze is stored another way; use graph() then
 	 */
 	public Graph getGraph() {
+		if (!(graph instanceof Graph)) {
+			throw new IllegalStateException("Maze is stored as a " + graph.getClass().getSimpleName() + ", not a Graph");
+		}
+		return (Graph) graph;
+	}
+
+	/**
+	 * returns the graph, however the maze is stored
+	 * @return the graph
+	 */
+	public GraphADT graph() {
 		return graph;
 	}
 
 	/**
-	 * Solve the maze using DFS
-	 * @return the path iterator or null if no path was found
+	 * Choose whether to search the maze with its corridors contracted, see
+	 * CorridorGraph. This only changes DEPTH_FIRST, BACKTRACKING and
+	 * FEWEST_COINS, whose paths do not depend on counting rooms, and only
+	 * solves without a budget while no TraceSink is set, since budgets and
+	 * sinks work in rooms. BACKTRACKING finds the same path either way; the
+	 * others find a path of the same kind, which may differ where there are
+	 * ties.
+	 * @param contract true to contract corridors
 	 */
-	public Iterator<GraphNode> solve() {
+	public void setContractCorridors(boolean contract) {
+		contractCorridors = contract;
+	}
+
+	/**
+	 * Save the maze in the binary format of MazeFile
+	 * @param outputFile the file to write
+	 * @throws MazeException if the maze cannot be stored in a grid or the file cannot be written
+	 */
+	public void save(String outputFile) throws MazeException {
+		try {
+			toMazeFile().save(outputFile);
+		} catch (IOException e) {
+			throw new MazeException("Error writing maze file");
+		}
+	}
+
+	/**
+	 * returns the maze with its graph as a GridGraph, as the binary format and MazeImage hold it
+	 * @return the maze, sharing the graph if it is already a GridGraph
+	 * @throws MazeException if the maze cannot be stored in a grid
+	 */
+	public MazeFile toMazeFile() throws MazeException {
 		try {
-			System.out.println("Starting solve...");
-			Iterator<GraphNode> solution = dfs(coins, graph.getNode(start));
-			if (solution != null) {
-				System.out.println("Solution found!");
-			} else {
-				System.out.println("No solution exists.");
-			}
-			return solution;
+			return new MazeFile(scale, coins, start, end, toGrid());
 		} catch (GraphException e) {
-			System.out.println("GraphException occurred: " + e.getMessage());
-			return null;
+			throw new MazeException("Maze cannot be stored in a grid");
 		}
 	}
 
+	/**
+	 * returns the graph as a GridGraph, copying it if it is stored another way
+	 */
+	private GridGraph toGrid() throws GraphException {
+		if (graph instanceof GridGraph) {
+			return (GridGraph) graph;
+		}
+		int length = ((IndexedGraph) graph).numNodes() / width;
+		GridGraph grid = new GridGraph(width, length);
+		for (int u = 0; u < grid.numNodes(); u++) {
+			// each room owns the links to its right and lower neighbours
+			int[] neighbours = {(u + 1) % width != 0 ? u + 1 : -1, u + width < grid.numNodes() ? u + width : -1};
+			for (int v : neighbours) {
+				GraphEdge edge = v < 0 ? null : graph.getEdge(graph.getNode(u), graph.getNode(v));
+				if (edge != null) {
+					grid.insertEdge(u, v, edge.getType(), edge.getLabel());
+				}
+			}
+		}
+		return grid;
+	}
 
 	/**
-	 * Depth first search to solve the maze
+	 * Solve the maze using DFS
+	 * @return the path iterator or null if no path was found
 	 */
+	public Iterator<GraphNode> solve() {
+		return solve(Strategy.DEPTH_FIRST);
+	}
 
-	private Iterator<GraphNode> dfs(int remainingCoins, GraphNode currentNode) throws GraphException {
-		// Debugging: Log the current state
-		System.out.println("Visiting node: " + currentNode.getName() + ", Remaining coins: " + remainingCoins);
-		System.out.println("Current path: " + path);
+	/**
+	 * Solve the maze
+	 * @param strategy how to search for the route
+	 * @return the path iterator or null if no path was found
+	 */
+	public Iterator<GraphNode> solve(Strategy strategy) {
+		return solve(strategy, null);
+	}
 
-		// Base case: If the end node is reached
-		if (currentNode.getName() == end) {
-			path.add(currentNode);
-			System.out.println("End node reached! Path: " + path);
-			return path.iterator();
-		}
+	/**
+	 * Solve the maze, counting what the search does
+	 * @param strategy how to search for the route
+	 * @param stats filled in with the search counters, the search time and the time the maze took to load;
+	 * other threads may read them while the search runs; null to count nothing
+	 * @return the path iterator or null if no path was found
+	 */
+	public Iterator<GraphNode> solve(Strategy strategy, SolveStats stats) {
+		int[] solution = search(strategy, stats, null);
+		return solution == null ? null : pathIterator(solution);
+	}
 
-		// Mark the current node as visited and add it to the path
-		currentNode.mark(true);
-		path.add(currentNode);
+	/**
+	 * Solve the maze on the common ForkJoinPool, within a budget
+	 * @param strategy how to search for the route
+	 * @param budget the deadline, state cap and progress callback for the search
+	 * @return a future for the path iterator, or for null if there is no path. Cancelling it stops the search.
+	 * If the budget runs out first, the future fails with a SolveLimitException holding the best route found.
+	 */
+	public CompletableFuture<Iterator<GraphNode>> solveAsync(Strategy strategy, SolveBudget budget) {
+		return solveAsync(strategy, budget, new SolveStats());
+	}
 
-		// Iterate over all edges connected to the current node
-		Iterator<GraphEdge> edges = graph.incidentEdges(currentNode);
-		while (edges != null && edges.hasNext()) {
-			GraphEdge edge = edges.next();
+	/**
+	 * Solve the maze on the common ForkJoinPool, within a budget, counting what the search does
+	 * @param strategy how to search for the route
+	 * @param budget the deadline, state cap and progress callback for the search
+	 * @param stats filled in with the search counters, as for solve(Strategy, SolveStats)
+	 * @return a future for the path iterator, or for null if there is no path. Cancelling it stops the search.
+	 * If the budget runs out first, the future fails with a SolveLimitException holding the best route found.
+	 */
+	public CompletableFuture<Iterator<GraphNode>> solveAsync(Strategy strategy, SolveBudget budget,
+			SolveStats stats) {
+		return solveAsync(strategy, budget, stats, ForkJoinPool.commonPool());
+	}
 
-			// Determine the next node based on the edge
-			GraphNode nextNode = edge.secondEndpoint();
-			if (nextNode == currentNode) {
-				nextNode = edge.firstEndpoint(); // Handle undirected edge
+	/**
+	 * Solve the maze on the given executor, within a budget, counting what the search does. Long budgeted
+	 * searches belong on an executor of their own, so they do not hold up the pool that parses mazes and
+	 * runs parallel searches.
+	 * @param strategy how to search for the route
+	 * @param budget the deadline, state cap and progress callback for the search
+	 * @param stats filled in with the search counters, as for solve(Strategy, SolveStats)
+	 * @param executor runs the search; the parallel strategies still expand large levels on the common pool
+	 * @return a future for the path iterator, or for null if there is no path. Cancelling it stops the search.
+	 * If the budget runs out first, the future fails with a SolveLimitException holding the best route found.
+	 */
+	public CompletableFuture<Iterator<GraphNode>> solveAsync(Strategy strategy, SolveBudget budget,
+			SolveStats stats, Executor executor) {
+		if (budget == null || stats == null || executor == null) {
+			throw new IllegalArgumentException("A budgeted solve needs a budget, stats and an executor");
+		}
+		CompletableFuture<Iterator<GraphNode>> result = new CompletableFuture<>();
+		result.whenComplete((path, failure) -> {
+			if (result.isCancelled()) {
+				budget.cancel();
+			}
+		});
+		CompletableFuture.runAsync(() -> {
+			try {
+				int[] solution = search(strategy, stats, budget);
+				Iterator<GraphNode> path = solution == null ? null : pathIterator(solution);
+				SolveBudget.Limit limit = stats.stopped();
+				if (limit == null) {
+					result.complete(path);
+				} else {
+					result.completeExceptionally(new SolveLimitException(limit, stats.getNodesVisited(),
+							stats.closestDistance(), path));
+				}
+			} catch (RuntimeException | Error e) {
+				result.completeExceptionally(e);
 			}
+		}, executor);
+		return result;
+	}
 
-			// Debugging: Log the edge and next node
-			int coinsNeeded = edge.getType();
-			System.out.println("Considering edge to node: " + nextNode.getName() + ", Coins needed: " + coinsNeeded);
+	/**
+	 * Find the route from a room to the exit that spends the fewest coins,
+	 * taking the one through the fewest rooms among those. The first query
+	 * finds the routes from every room at once and keeps them, so later
+	 * queries only take time in proportion to the route. The graph must not be
+	 * changed after the first query.
+	 * @param room the room to start from, numbered row * width + column
+	 * @return the path iterator from the room to the exit, or null if the coins cannot pay for any route
+	 */
+	public Iterator<GraphNode> pathFrom(int room) {
+		checkRoom(room);
+		int[] route = exitRoutes().path(room, coins);
+		return route == null ? null : pathIterator(route);
+	}
 
-			// Skip already visited nodes
-			if (!nextNode.isMarked() && coinsNeeded <= remainingCoins) {
-				System.out.println("Traversing edge to node: " + nextNode.getName() + ", Coins needed: " + coinsNeeded);
+	/**
+	 * Find the routes from many rooms to the exit, as pathFrom does, answering
+	 * large batches on the common ForkJoinPool
+	 * @param rooms the rooms to start from
+	 * @return the path iterator from each room, or null for a room with no route, in the order of the rooms
+	 */
+	public List<Iterator<GraphNode>> pathsFrom(int... rooms) {
+		for (int room : rooms) {
+			checkRoom(room);
+		}
+		int[][] routes = exitRoutes().paths(rooms, coins, ForkJoinPool.commonPool());
+		List<Iterator<GraphNode>> paths = new ArrayList<>(routes.length);
+		for (int[] route : routes) {
+			paths.add(route == null ? null : pathIterator(route));
+		}
+		return paths;
+	}
 
-				// Recursively attempt to solve from the next node
-				Iterator<GraphNode> result = DFS(remainingCoins - coinsNeeded, nextNode);
-				if (result != null) return result;
+	/**
+	 * returns the routes to the exit, building them on first use
+	 */
+	private RouteTree exitRoutes() {
+		RouteTree routes = exitRoutes;
+		if (routes == null) {
+			synchronized (this) {
+				routes = exitRoutes;
+				if (routes == null) {
+					Trace.info("Building routes to the exit...");
+					routes = RouteTree.build((IndexedGraph) graph, end);
+					exitRoutes = routes;
+				}
+			}
+		}
+		return routes;
+	}
 
-				// Restore coins if backtracking
-				System.out.println("Backtracking from node: " + nextNode.getName());
-				remainingCoins += coinsNeeded;
+	/**
+	 * returns the contracted graph for a strategy, building it the first time,
+	 * or null if corridors are not contracted for that strategy
+	 */
+	private CorridorGraph corridors(Strategy strategy) {
+		if (!contractCorridors || (strategy != Strategy.DEPTH_FIRST && strategy != Strategy.BACKTRACKING
+				&& strategy != Strategy.FEWEST_COINS)) {
+			return null;
+		}
+		CorridorGraph contracted = corridors;
+		if (contracted == null) {
+			synchronized (this) {
+				contracted = corridors;
+				if (contracted == null) {
+					Trace.info("Contracting corridors...");
+					contracted = CorridorGraph.build((IndexedGraph) graph, start, end);
+					corridors = contracted;
+				}
 			}
 		}
+		return contracted;
+	}
 
-		// Backtrack: remove the current node from the path and unmark it
-		System.out.println("Removing node from path: " + currentNode.getName());
-		path.remove(path.size() - 1);
-		currentNode.mark(false);
+	private void checkRoom(int room) {
+		if (room < 0 || room >= ((IndexedGraph) graph).numNodes()) {
+			throw new IllegalArgumentException("No room " + room);
+		}
+	}
 
-		// If no solution is found, return null
-		return null;
+	/**
+	 * Run a search
+	 * @param budget the budget to hold the search to, or null; needs stats
+	 * @return the names of the nodes on the path, the best partial route if the budget ran out,
+	 * or null if there is no path
+	 */
+	private int[] search(Strategy strategy, SolveStats stats, SolveBudget budget) {
+		Trace.info("Starting solve...");
+		IndexedGraph rooms = (IndexedGraph) graph;
+		int from = start;
+		int to = end;
+		CorridorGraph contracted = budget == null && Trace.sink() == null ? corridors(strategy) : null;
+		if (contracted != null) {
+			rooms = contracted;
+			from = contracted.node(start);
+			to = contracted.node(end);
+		}
+		int[] solution;
+		if (stats != null) {
+			stats.start(parseNanos, buildNanos);
+			if (budget != null) {
+				stats.limit(budget, end, width);
+			}
+		}
+		try {
+			switch (strategy) {
+				case FEWEST_ROOMS:
+					solution = PathSearch.fewestRooms(rooms, from, to, coins, stats);
+					break;
+				case FEWEST_COINS:
+					solution = PathSearch.fewestCoins(rooms, from, to, coins, stats);
+					break;
+				case A_STAR:
+					solution = PathSearch.aStar(rooms, from, to, coins, width, stats);
+					break;
+				case PARALLEL_FEWEST_ROOMS:
+					solution = ParallelSearch.fewestRooms(rooms, from, to, coins, ForkJoinPool.commonPool(), stats);
+					break;
+				case BIDIRECTIONAL:
+					solution = BidirectionalSearch.search(rooms, from, to, coins, stats);
+					break;
+				case BACKTRACKING:
+					solution = PathSearch.depthFirst(rooms, from, to, coins, stats);
+					break;
+				default:
+					solution = PathSearch.memoDepthFirst(rooms, from, to, coins, stats);
+			}
+			if (contracted != null) {
+				solution = contracted.expand(solution);
+			}
+		} finally {
+			if (stats != null) {
+				stats.finish();
+			}
+		}
+		if (stats != null && stats.stopped() != null) {
+			Trace.info("Solve stopped early.");
+		} else if (solution != null) {
+			Trace.info("Solution found!");
+		} else {
+			Trace.info("No solution exists.");
+		}
+		return solution;
 	}
 
+	/**
+	 * Wrap a path of node names in an iterator over the nodes of the graph
+	 * @param names the names of the nodes on the path
+	 * @return the path iterator
+	 */
+	private Iterator<GraphNode> pathIterator(int[] names) {
+		return new Iterator<GraphNode>() {
+			private int next = 0;
 
+			@Override
+			public boolean hasNext() {
+				return next < names.length;
+			}
+
+			@Override
+			public GraphNode next() {
+				if (next >= names.length) {
+					throw new NoSuchElementException();
+				}
+				try {
+					return graph.getNode(names[next++]);
+				} catch (GraphException e) {
+					throw new IllegalStateException(e.getMessage());
+				}
+			}
+		};
+	}
 
 
 	/**
 	 * Read the input
-	 * and initialize the graph
+	 * and initialize the graph.
+	 * The file is memory mapped and scanned byte by byte, and each room and
+	 * link goes straight into the graph. Large files are scanned in bands of
+	 * rows on the common ForkJoinPool. A COMPACT maze is read into a GridGraph
+	 * first, so its CSR arrays can be filled in parallel too.
 	 */
 
-	private void readInput(BufferedReader inputReader) throws IOException, GraphException {
-		int scaleFactor = Integer.parseInt(inputReader.readLine().trim());
-		int width = Integer.parseInt(inputReader.readLine().trim());
-		int length = Integer.parseInt(inputReader.readLine().trim());
-		coins = Integer.parseInt(inputReader.readLine().trim());
+	private void readInput(String inputFile) throws IOException, GraphException {
+		Trace.info("Reading maze input...");
+		long begin = System.nanoTime();
+
+		if (MazeFile.isBinary(inputFile)) {
+			MazeFile file = MazeFile.map(inputFile);
+			parseNanos = System.nanoTime() - begin;
+			// a mapped file is always kept as a GridGraph
+			representation = Representation.GRID;
+			load(file);
+			return;
+		}
 
-		graph = new Graph(width * length);
-		String[] mazeLines = inputReader.lines().toArray(String[]::new);
+		if (representation == Representation.COMPACT) {
+			// parse into a grid in bands, then fill the CSR arrays from it in parallel
+			MazeFile file = MazeFile.read(inputFile);
+			parseNanos = System.nanoTime() - begin;
+			load(file);
+			return;
+		}
 
-		System.out.println("Reading maze input...");
+		MazeParser.parse(inputFile, new MazeParser.Handler() {
+			@Override
+			public void header(int mazeScale, int mazeWidth, int length, int mazeCoins) {
+				scale = mazeScale;
+				width = mazeWidth;
+				coins = mazeCoins;
+				graph = newGraph(mazeWidth, length);
+			}
 
-		for (int row = 0; row < mazeLines.length; row += 2) {
-			String rooms = mazeLines[row];
-			System.out.println("Processing row: " + row + " -> " + rooms); // Debugging
+			@Override
+			public void room(char kind, int row, int col) throws GraphException {
+				handleRoom(kind, row, col, width);
+			}
 
-			if (row + 1 < mazeLines.length) { // Check for corresponding wall row
-				String walls = mazeLines[row + 1];
-				System.out.println("Processing walls: " + (row + 1) + " -> " + walls); // Debugging
+			@Override
+			public void link(char code, int node, int neighbour) throws GraphException {
+				handleEdge(code, node, neighbour);
+			}
+		}, ForkJoinPool.commonPool());
+		long parsed = System.nanoTime();
+		parseNanos = parsed - begin;
 
-				for (int col = 0; col < rooms.length(); col++) {
-					char roomChar = rooms.charAt(col);
-					handleRoom(roomChar, row / 2, col, width);
+		if (Trace.DEBUG) {
+			Trace.debug("Final check: Start node = " + start + ", End node = " + end);
+		}
+		buildNanos = System.nanoTime() - parsed;
+	}
 
-					if (col < walls.length()) {
-						char wallChar = walls.charAt(col);
-						handleEdge(roomChar, wallChar, row / 2, col, width);
-					}
-				}
-			} else { // Handle the last row if it doesn't have walls
-				for (int col = 0; col < rooms.length(); col++) {
-					char roomChar = rooms.charAt(col);
-					handleRoom(roomChar, row / 2, col, width); // Only process rooms
+	/**
+	 * Take the rooms of a maze that has already been read. Its GridGraph is
+	 * used as it is for a GRID maze, and filled straight into the CSR arrays
+	 * on the common ForkJoinPool for a COMPACT one. Otherwise its links are
+	 * copied into a new graph in the order a text file lists them. Either way
+	 * the graph is the same as one read from the file.
+	 * @param file the maze
+	 * @throws GraphException if a link cannot be copied
+	 */
+	private void load(MazeFile file) throws GraphException {
+		long begin = System.nanoTime();
+		GridGraph grid = file.getGraph();
+		scale = file.getScale();
+		coins = file.getCoins();
+		start = file.getStart();
+		end = file.getEnd();
+		width = grid.getWidth();
+		switch (representationFor(width, grid.getLength())) {
+			case GRID:
+				graph = grid;
+				return;
+			case COMPACT:
+				graph = CompactGraph.fromGrid(grid, ForkJoinPool.commonPool());
+				buildNanos = System.nanoTime() - begin;
+				return;
+			default:
+				graph = newGraph(width, grid.getLength());
+		}
+		for (int row = 0; row < grid.getLength(); row++) {
+			int first = row * width;
+			for (int u = first; u < first + width - 1; u++) {
+				copyLink(grid.right(u), u, u + 1);
+			}
+			if (row < grid.getLength() - 1) {
+				for (int u = first; u < first + width; u++) {
+					copyLink(grid.lower(u), u, u + width);
 				}
 			}
 		}
+		buildNanos = System.nanoTime() - begin;
+	}
+
+	/**
+	 * Copy one link of a GridGraph into the graph
+	 * @param code the link code
+	 * @param node the room on the left or above
+	 * @param neighbour the room on the right or below
+	 * @throws GraphException if the edge is invalid
+	 */
+	private void copyLink(int code, int node, int neighbour) throws GraphException {
+		if (code >= GridGraph.DOOR) {
+			insertEdge(node, neighbour, code - GridGraph.DOOR, "door");
+		} else if (code == GridGraph.CORRIDOR) {
+			insertEdge(node, neighbour, 0, "corridor");
+		}
+	}
+
+	/**
+	 * returns the representation requested, or the one picked for a maze of the given size
+	 */
+	private Representation representationFor(int width, int length) {
+		if (representation != null) {
+			return representation;
+		}
+		return width * length > LARGE_MAZE_THRESHOLD ? Representation.GRID : Representation.ADJACENCY_LIST;
+	}
 
-		System.out.println("Final check: Start node = " + start + ", End node = " + end);
+	/**
+	 * Create an empty graph for a maze. Unless a representation was requested,
+	 * large mazes get a GridGraph and small ones a Graph.
+	 * @param width the width in rooms
+	 * @param length the length in rooms
+	 * @return the graph
+	 */
+	private GraphADT newGraph(int width, int length) {
+		switch (representationFor(width, length)) {
+			case COMPACT:
+				return new CompactGraph(width * length);
+			case GRID:
+				return new GridGraph(width, length);
+			default:
+				return new Graph(width * length);
+		}
 	}
 
 
@@ -185,16 +628,19 @@ public class Maze {
 	 */
 	private void handleRoom(char roomChar, int row, int col, int width) throws GraphException {
 		int nodeIndex = row * width + col; // Calculate the node index based on grid position
-		System.out.println("Parsing room: " + roomChar + " at index: " + nodeIndex); // Debugging
 
 		switch (roomChar) {
 			case 's': // Start node
 				start = nodeIndex;
-				System.out.println("Start node found at index: " + start);
+				if (Trace.DEBUG) {
+					Trace.debug("Start node found at index: " + start);
+				}
 				break;
 			case 'x': // End node
 				end = nodeIndex;
-				System.out.println("End node found at index: " + end);
+				if (Trace.DEBUG) {
+					Trace.debug("End node found at index: " + end);
+				}
 				break;
 			default:
 				break;
@@ -205,28 +651,17 @@ public class Maze {
 
 	/**
 	 * Handle the edge
-	 * @param roomChar the room character
 	 * @param wallChar the wall character
-	 * @param row the row
-	 * @param col the column
-	 * @param width the width
+	 * @param nodeIndex the first room
+	 * @param neighborIndex the room on the other side of the wall
 	 * @throws GraphException if the edge is invalid
 	 */
-	private void handleEdge(char roomChar, char wallChar, int row, int col, int width) throws GraphException {
-		int nodeIndex = row * width + col;
-		int neighborIndex = nodeIndex + 1;
-
-		System.out.println("Parsing edge: " + wallChar + " between nodes " + nodeIndex + " and " + neighborIndex);
-
-		if (Character.isDigit(wallChar)) {
-			int coinsNeeded = Character.getNumericValue(wallChar);
+	private void handleEdge(char wallChar, int nodeIndex, int neighborIndex) throws GraphException {
+		if (wallChar >= '0' && wallChar <= '9') {
+			int coinsNeeded = wallChar - '0';
 			insertEdge(nodeIndex, neighborIndex, coinsNeeded, "door");
-			GraphEdge edge = graph.getEdge(graph.getNode(nodeIndex), graph.getNode(neighborIndex));
-			edge.setType(coinsNeeded); // Set type for door edges
 		} else if (wallChar == 'c') {
 			insertEdge(nodeIndex, neighborIndex, 0, "corridor");
-			GraphEdge edge = graph.getEdge(graph.getNode(nodeIndex), graph.getNode(neighborIndex));
-			edge.setType(0); // Set type for corridor edges
 		}
 	}
 
@@ -239,6 +674,11 @@ public class Maze {
 	 * @throws GraphException if the edge is invalid
 	 */
 	private void insertEdge(int node1, int node2, int edgeType, String label) throws GraphException {
+		// the grid graph takes node names directly, without making node views
+		if (graph instanceof GridGraph) {
+			((GridGraph) graph).insertEdge(node1, node2, edgeType, label);
+			return;
+		}
 		GraphNode u = graph.getNode(node1);
 		GraphNode v = graph.getNode(node2);
 		graph.insertEdge(u, v, edgeType, label);
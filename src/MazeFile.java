@@ -0,0 +1,278 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * A maze in the binary file format. The file is a 32 byte header of eight
+ * big-endian ints (magic number, format version, scale factor, width, length,
+ * coins, start room and end room) followed by one byte per room, in the
+ * layout GridGraph uses: the low nibble is the link to the room on the right
+ * and the high nibble the link to the room below.
+ *
+ * Loading maps the room bytes read-only and uses them in place, so nothing
+ * is copied onto the heap, and processes loading the same file share its
+ * pages through the page cache. The bytes are read once on loading to check
+ * that every link code is valid and leads to a room inside the maze.
+ *
+ * A text maze file can be read into a MazeFile too, so one pass over the
+ * file gives a model that both Maze and DrawMaze can use.
+ */
+public class MazeFile {
+
+	// "MAZE" in ASCII
+	static final int MAGIC = 0x4d415a45;
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 32;
+	// the room bytes checked at a time on loading
+	private static final int BLOCK = 1 << 16;
+
+	private final int scale;
+	private final int coins;
+	private final int start;
+	private final int end;
+	private final GridGraph graph;
+
+	/**
+	 * Constructor for a binary maze
+	 * @param scale the scale factor for drawing
+	 * @param coins the number of coins
+	 * @param start the starting room
+	 * @param end the end room
+	 * @param graph the rooms and their links
+	 */
+	public MazeFile(int scale, int coins, int start, int end, GridGraph graph) {
+		this.scale = scale;
+		this.coins = coins;
+		this.start = start;
+		this.end = end;
+		this.graph = graph;
+	}
+
+	/**
+	 * Convert a text maze file to a binary one
+	 * @param args the text file and the binary file to write
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.out.println("Usage: java MazeFile labyrinthFile binaryFile");
+			return;
+		}
+		try {
+			new Maze(args[0], Maze.Representation.GRID).save(args[1]);
+		} catch (MazeException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Check whether a file is in the binary format
+	 * @param inputFile the file
+	 * @return true if the file starts with the binary magic number
+	 * @throws IOException if the file cannot be read
+	 */
+	public static boolean isBinary(String inputFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// keep reading until four bytes or the end of the file
+			}
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Load a maze file of either format
+	 * @param inputFile the file, in the text format or the binary format
+	 * @return the maze; the graph of a binary file is mapped read-only, that of a text file is on the heap
+	 * @throws IOException if the file cannot be read or is not a valid maze
+	 * @throws GraphException if a text file has an invalid link
+	 */
+	public static MazeFile read(String inputFile) throws IOException, GraphException {
+		if (isBinary(inputFile)) {
+			return map(inputFile);
+		}
+		TextHandler handler = new TextHandler();
+		MazeParser.parse(inputFile, handler, ForkJoinPool.commonPool());
+		if (handler.graph == null) {
+			throw new IOException("Maze file has no rooms");
+		}
+		return new MazeFile(handler.scale, handler.coins, handler.start, handler.end, handler.graph);
+	}
+
+	/**
+	 * Load a binary maze file, mapping its rooms read-only
+	 * @param inputFile the file
+	 * @return the maze, whose graph is read-only
+	 * @throws IOException if the file cannot be read or is not a valid binary maze
+	 */
+	public static MazeFile map(String inputFile) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header) >= 0) {
+				// keep reading until the whole header or the end of the file
+			}
+			if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+				throw new IOException("Not a binary maze file");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException("Unsupported binary maze version " + header.getInt(4));
+			}
+			int scale = header.getInt(8);
+			if (scale <= 0) {
+				throw new IOException("Invalid binary maze scale " + scale);
+			}
+			int width = header.getInt(12);
+			int length = header.getInt(16);
+			int coins = header.getInt(20);
+			int start = header.getInt(24);
+			int end = header.getInt(28);
+			long rooms = (long) width * length;
+			if (width <= 0 || length <= 0 || rooms > Integer.MAX_VALUE) {
+				throw new IOException("Invalid binary maze size");
+			}
+			if (channel.size() != HEADER_BYTES + rooms) {
+				throw new IOException("Binary maze file has the wrong size");
+			}
+			if (start < 0 || start >= rooms || end < 0 || end >= rooms) {
+				throw new IOException("Invalid binary maze start or end");
+			}
+			// the mapping stays valid after the channel is closed
+			ByteBuffer cells = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, rooms);
+			checkLinks(cells, width, length);
+			return new MazeFile(scale, coins, start, end, new GridGraph(width, length, cells));
+		}
+	}
+
+	/**
+	 * Check the link codes of every room: each must be a wall, a corridor or a
+	 * door, and no link may lead right from the last column or down from the last row
+	 * @throws IOException if a room has an invalid link
+	 */
+	private static void checkLinks(ByteBuffer cells, int width, int length) throws IOException {
+		int maxCode = GridGraph.DOOR + GridGraph.MAX_DOOR;
+		int lastRow = (length - 1) * width;
+		byte[] block = new byte[BLOCK];
+		ByteBuffer rooms = cells.duplicate();
+		for (int first = 0; rooms.hasRemaining(); first += BLOCK) {
+			int count = Math.min(BLOCK, rooms.remaining());
+			rooms.get(block, 0, count);
+			for (int i = 0; i < count; i++) {
+				int right = block[i] & 0x0f;
+				int lower = (block[i] >> 4) & 0x0f;
+				int u = first + i;
+				if (right > maxCode || lower > maxCode) {
+					throw new IOException("Invalid link code in binary maze room " + u);
+				}
+				if (right != GridGraph.WALL && u % width == width - 1
+						|| lower != GridGraph.WALL && u >= lastRow) {
+					throw new IOException("Binary maze room " + u + " links outside the maze");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Write the maze in the binary format
+	 * @param outputFile the file to write, replaced if it exists
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(String outputFile) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(MAGIC).putInt(VERSION).putInt(scale).putInt(graph.getWidth()).putInt(graph.getLength())
+				.putInt(coins).putInt(start).putInt(end);
+		header.flip();
+		ByteBuffer cells = graph.cells();
+		try (FileChannel channel = FileChannel.open(Paths.get(outputFile), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			while (header.hasRemaining()) {
+				channel.write(header);
+			}
+			while (cells.hasRemaining()) {
+				channel.write(cells);
+			}
+		}
+	}
+
+	/**
+	 * returns the scale factor
+	 * @return the scale factor
+	 */
+	public int getScale() {
+		return scale;
+	}
+
+	/**
+	 * returns the number of coins
+	 * @return the number of coins
+	 */
+	public int getCoins() {
+		return coins;
+	}
+
+	/**
+	 * returns the starting room
+	 * @return the starting room
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * returns the end room
+	 * @return the end room
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * returns the graph of the maze
+	 * @return the graph
+	 */
+	public GridGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Builds a GridGraph from the rooms and links of a text file
+	 */
+	private static final class TextHandler implements MazeParser.Handler {
+		private int scale;
+		private int coins;
+		private int start;
+		private int end;
+		private GridGraph graph;
+
+		@Override
+		public void header(int mazeScale, int width, int length, int mazeCoins) throws GraphException {
+			if (width <= 0 || length <= 0 || (long) width * length > Integer.MAX_VALUE) {
+				throw new GraphException("Invalid maze size " + width + "x" + length);
+			}
+			scale = mazeScale;
+			coins = mazeCoins;
+			graph = new GridGraph(width, length);
+		}
+
+		@Override
+		public void room(char kind, int row, int col) {
+			if (kind == 's') {
+				start = row * graph.getWidth() + col;
+			} else if (kind == 'x') {
+				end = row * graph.getWidth() + col;
+			}
+		}
+
+		@Override
+		public void link(char code, int node, int neighbour) throws GraphException {
+			// the same codes Maze reads; anything else is left as a wall
+			if (code >= '0' && code <= '9') {
+				graph.insertEdge(node, neighbour, code - '0', "door");
+			} else if (code == 'c') {
+				graph.insertEdge(node, neighbour, 0, "corridor");
+			}
+		}
+	}
+}
@@ -0,0 +1,306 @@
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Generates mazes of any size from a seed, in the text format Maze reads or
+ * the binary format of MazeFile. The same seed and settings always give the
+ * same maze.
+ *
+ * Mazes are made one row at a time with Eller's algorithm, which only keeps
+ * set labels for the current row, and each row is written out as soon as it
+ * is done, so memory use is O(width) whatever the length. The start is the
+ * top left room and the exit the bottom right one.
+ */
+public class MazeGenerator {
+
+	/**
+	 * The kinds of maze
+	 */
+	public enum Kind {
+		// exactly one route between any two rooms, all corridors
+		PERFECT,
+		// a perfect maze with extra openings, so there are loops
+		BRAIDED,
+		// a braided maze where many openings are doors costing 0 to 9 coins
+		DOORS,
+		// a braided maze whose exit is walled in
+		UNSOLVABLE
+	}
+
+	// the chance that two rooms in different sets are joined along a row
+	private static final double JOIN = 0.5;
+	// the chance that a room opens down to the next row, beyond the one opening each set needs
+	private static final double DOWN = 0.3;
+	// the chance that a wall left standing is opened anyway in a braided maze
+	private static final double LOOP = 0.15;
+	// the chance that an opening is a door in a door maze
+	private static final double DOOR = 0.2;
+
+	private final Kind kind;
+	private final int width;
+	private final int length;
+	private final int coins;
+	private final long seed;
+
+	/**
+	 * Constructor for the generator
+	 * @param kind the kind of maze
+	 * @param width the number of rooms in a row
+	 * @param length the number of rows
+	 * @param coins the coins the maze gives to spend on doors
+	 * @param seed the random seed
+	 * @throws IllegalArgumentException if the size is invalid, or an unsolvable maze has one room, which is its start and exit
+	 */
+	public MazeGenerator(Kind kind, int width, int length, int coins, long seed) {
+		if (width <= 0 || length <= 0 || (long) width * length > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid maze size " + width + "x" + length);
+		}
+		if (kind == Kind.UNSOLVABLE && width == 1 && length == 1) {
+			throw new IllegalArgumentException("An unsolvable maze needs more than one room");
+		}
+		this.kind = kind;
+		this.width = width;
+		this.length = length;
+		this.coins = coins;
+		this.seed = seed;
+	}
+
+	/**
+	 * Generate a maze file
+	 * @param args the kind, width, length, coins, seed and output file; a file ending in .bin is written in the binary format
+	 */
+	public static void main(String[] args) {
+		if (args.length != 6) {
+			System.out.println("Usage: java MazeGenerator PERFECT|BRAIDED|DOORS|UNSOLVABLE width length coins seed outputFile");
+			return;
+		}
+		try {
+			MazeGenerator generator = new MazeGenerator(Kind.valueOf(args[0].toUpperCase()),
+					Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+					Long.parseLong(args[4]));
+			generator.write(args[5]);
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Write the maze to a file
+	 * @param outputFile the file, in the binary format if its name ends in .bin, otherwise in the text format
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(String outputFile) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 1 << 16)) {
+			if (outputFile.endsWith(".bin")) {
+				writeBinary(out);
+			} else {
+				writeText(out);
+			}
+		}
+	}
+
+	/**
+	 * Write the maze in the text format
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 */
+	public void writeText(OutputStream out) throws IOException {
+		out.write((1 + "\n" + width + "\n" + length + "\n" + coins + "\n").getBytes());
+		byte[] line = new byte[2 * width];
+		generate((row, right, down) -> {
+			for (int col = 0; col < width; col++) {
+				line[2 * col] = (byte) room(row, col);
+				line[2 * col + 1] = (byte) linkChar(right[col]);
+			}
+			line[2 * width - 1] = '\n';
+			out.write(line);
+			if (row < length - 1) {
+				for (int col = 0; col < width; col++) {
+					line[2 * col] = (byte) linkChar(down[col]);
+					line[2 * col + 1] = 'w';
+				}
+				line[2 * width - 1] = '\n';
+				out.write(line);
+			}
+		});
+	}
+
+	/**
+	 * Write the maze in the binary format of MazeFile
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 */
+	public void writeBinary(OutputStream out) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(MazeFile.HEADER_BYTES);
+		header.putInt(MazeFile.MAGIC).putInt(MazeFile.VERSION).putInt(1).putInt(width).putInt(length)
+				.putInt(coins).putInt(0).putInt(width * length - 1);
+		out.write(header.array());
+		byte[] cells = new byte[width];
+		generate((row, right, down) -> {
+			for (int col = 0; col < width; col++) {
+				cells[col] = (byte) (right[col] | (down[col] << 4));
+			}
+			out.write(cells);
+		});
+	}
+
+	/**
+	 * Receives each row of the maze as it is made
+	 */
+	private interface RowSink {
+		/**
+		 * @param row the row
+		 * @param right the link code from each room to the one on its right, as in GridGraph
+		 * @param down the link code from each room to the one below it
+		 */
+		void row(int row, int[] right, int[] down) throws IOException;
+	}
+
+	/**
+	 * Run Eller's algorithm, handing each finished row to the sink
+	 */
+	private void generate(RowSink sink) throws IOException {
+		SplittableRandom random = new SplittableRandom(seed);
+		// the set of each room in the current row; rooms in one set are already joined
+		int[] set = new int[width];
+		// union-find over set labels, which are below 2 * width
+		int[] parent = new int[2 * width];
+		// the rooms left to look at, and whether one opened down, for each set of the row
+		int[] remaining = new int[2 * width];
+		boolean[] opened = new boolean[2 * width];
+		// relabels the sets carried down so they stay below width
+		int[] relabel = new int[2 * width];
+		int[] right = new int[width];
+		int[] down = new int[width];
+		for (int col = 0; col < width; col++) {
+			set[col] = col;
+		}
+
+		for (int row = 0; row < length; row++) {
+			boolean last = row == length - 1;
+			for (int label = 0; label < 2 * width; label++) {
+				parent[label] = label;
+			}
+			// join neighbours along the row; the last row joins every set left apart
+			for (int col = 0; col < width - 1; col++) {
+				int a = find(parent, set[col]);
+				int b = find(parent, set[col + 1]);
+				if (a != b && (last || random.nextDouble() < JOIN)) {
+					parent[b] = a;
+					right[col] = opening(random);
+				} else {
+					right[col] = loop(random);
+				}
+			}
+			right[width - 1] = GridGraph.WALL;
+
+			if (last) {
+				Arrays.fill(down, GridGraph.WALL);
+			} else {
+				// every set must open down at least once, or its rooms would be cut off
+				for (int col = 0; col < width; col++) {
+					int label = find(parent, set[col]);
+					set[col] = label;
+					remaining[label] = 0;
+					opened[label] = false;
+				}
+				// an unsolvable maze never opens down into the exit
+				int sealed = kind == Kind.UNSOLVABLE && row == length - 2 ? width - 1 : -1;
+				for (int col = 0; col < width; col++) {
+					if (col != sealed) {
+						remaining[set[col]]++;
+					}
+				}
+				for (int col = 0; col < width; col++) {
+					int label = set[col];
+					if (col == sealed) {
+						down[col] = GridGraph.WALL;
+						continue;
+					}
+					remaining[label]--;
+					if ((remaining[label] == 0 && !opened[label]) || random.nextDouble() < DOWN) {
+						opened[label] = true;
+						down[col] = opening(random);
+					} else {
+						down[col] = loop(random);
+					}
+				}
+			}
+
+			if (kind == Kind.UNSOLVABLE && last && width > 1) {
+				// and never joins the exit to the room on its left
+				right[width - 2] = GridGraph.WALL;
+			}
+			sink.row(row, right, down);
+
+			if (!last) {
+				// rooms below an opening keep their set, the others start a new one
+				Arrays.fill(relabel, -1);
+				int next = 0;
+				for (int col = 0; col < width; col++) {
+					if (down[col] != GridGraph.WALL) {
+						if (relabel[set[col]] < 0) {
+							relabel[set[col]] = next++;
+						}
+						set[col] = relabel[set[col]];
+					} else {
+						set[col] = width + col;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * returns the code of an opening the maze needs: a corridor, or in a door maze sometimes a door
+	 */
+	private int opening(SplittableRandom random) {
+		if (kind == Kind.DOORS && random.nextDouble() < DOOR) {
+			return GridGraph.DOOR + random.nextInt(GridGraph.MAX_DOOR + 1);
+		}
+		return GridGraph.CORRIDOR;
+	}
+
+	/**
+	 * returns the code of a link the maze does not need: a wall, or in a braided maze sometimes an opening
+	 */
+	private int loop(SplittableRandom random) {
+		if (kind != Kind.PERFECT && random.nextDouble() < LOOP) {
+			return opening(random);
+		}
+		return GridGraph.WALL;
+	}
+
+	private char room(int row, int col) {
+		if (row == 0 && col == 0) {
+			return 's';
+		}
+		if (row == length - 1 && col == width - 1) {
+			return 'x';
+		}
+		return 'o';
+	}
+
+	private static char linkChar(int code) {
+		if (code == GridGraph.WALL) {
+			return 'w';
+		}
+		if (code == GridGraph.CORRIDOR) {
+			return 'c';
+		}
+		return (char) ('0' + code - GridGraph.DOOR);
+	}
+
+	private static int find(int[] parent, int label) {
+		while (parent[label] != label) {
+			parent[label] = parent[parent[label]];
+			label = parent[label];
+		}
+		return label;
+	}
+}
@@ -0,0 +1,304 @@
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/**
+ * A picture of a maze and its solution, drawn without a window, so it works
+ * with java.awt.headless=true. It looks like DrawMaze once the solution has
+ * been drawn, without the person.
+ *
+ * A maze small enough for one image can be written as a single PNG file. Any
+ * maze can be written as 256 by 256 pixel PNG tiles at several zoom levels,
+ * in the usual zoom/x/y.png layout, for a map viewer. The deepest level is
+ * at full size and each level above it is half the size of the one below.
+ * Tiles are drawn in parallel, and each level is made by shrinking the four
+ * tiles below each tile, so only a few tiles are held in memory at a time.
+ */
+public class MazeImage {
+
+	// the size of a tile in pixels
+	public static final int TILE_SIZE = 256;
+	// the colour around the maze on tiles at its edges
+	private static final int OUTSIDE = 0xffffffff;
+
+	private final GridGraph grid;
+	private final int start;
+	private final int end;
+	private final MazeRenderer renderer;
+	// the rooms of the solution, in order
+	private final int[] path;
+	// the size of the whole maze in pixels
+	private final int width;
+	private final int height;
+
+	/**
+	 * Constructor for the picture
+	 * @param maze the maze
+	 * @param solution the rooms of the solution, or null to draw the maze alone
+	 */
+	public MazeImage(MazeFile maze, Iterator<GraphNode> solution) {
+		grid = maze.getGraph();
+		start = maze.getStart();
+		end = maze.getEnd();
+		renderer = newRenderer(maze.getScale());
+		int[] rooms = new int[16];
+		int size = 0;
+		while (solution != null && solution.hasNext()) {
+			if (size == rooms.length) {
+				rooms = Arrays.copyOf(rooms, size * 2);
+			}
+			rooms[size++] = solution.next().getName();
+		}
+		path = Arrays.copyOf(rooms, size);
+		width = (2 * grid.getWidth() - 1) * maze.getScale();
+		height = (2 * grid.getLength() - 1) * maze.getScale();
+	}
+
+	/**
+	 * Draw a maze file and its solution
+	 * @param args the maze file, the output, and the strategy to solve with, DEPTH_FIRST if not given;
+	 * an output ending in .png is written as one image, anything else as a directory of tiles
+	 */
+	public static void main(String[] args) {
+		if (args.length != 2 && args.length != 3) {
+			System.out.println("Usage: java MazeImage labyrinthFile output.png|outputDirectory [strategy]");
+			return;
+		}
+		try {
+			Maze maze = new Maze(args[0], Maze.Representation.GRID);
+			Maze.Strategy strategy = args.length == 3 ? Maze.Strategy.valueOf(args[2].toUpperCase())
+					: Maze.Strategy.DEPTH_FIRST;
+			MazeImage image = new MazeImage(maze.toMazeFile(), maze.solve(strategy));
+			if (args[1].endsWith(".png")) {
+				image.write(args[1]);
+			} else {
+				System.out.println(image.writeTiles(args[1], ForkJoinPool.commonPool()) + " tiles written");
+			}
+		} catch (MazeException | IOException | IllegalArgumentException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	/**
+	 * Draw the whole maze into one image
+	 * @return the image, of type TYPE_INT_RGB
+	 * @throws IllegalStateException if the maze is too large for one image
+	 */
+	public BufferedImage render() {
+		if ((long) width * height > Integer.MAX_VALUE) {
+			throw new IllegalStateException("Maze is too large for one image, write it as tiles");
+		}
+		BufferedImage image = new BufferedImage(Math.max(1, width), Math.max(1, height), BufferedImage.TYPE_INT_RGB);
+		renderer.drawMaze(image, grid, start, end, 0, 0);
+		for (int i = 0; i + 1 < path.length; i++) {
+			renderer.drawStep(image, grid, path[i], path[i + 1], 0, 0);
+		}
+		return image;
+	}
+
+	/**
+	 * Write the whole maze as one PNG image
+	 * @param outputFile the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(String outputFile) throws IOException {
+		ImageIO.write(render(), "png", new File(outputFile));
+	}
+
+	/**
+	 * returns the deepest zoom level, at which tiles are at full size
+	 * @return the level; at level 0 one tile holds the whole maze
+	 */
+	public int getMaxZoom() {
+		int zoom = 0;
+		while ((long) TILE_SIZE << zoom < Math.max(width, height)) {
+			zoom++;
+		}
+		return zoom;
+	}
+
+	/**
+	 * Write the maze as PNG tiles, outputDirectory/zoom/x/y.png for every zoom level from 0 to getMaxZoom
+	 * @param outputDirectory the directory to write the tiles under
+	 * @param pool the pool to draw and write the tiles on
+	 * @return the number of tiles written
+	 * @throws IOException if a tile cannot be written
+	 */
+	public int writeTiles(String outputDirectory, ForkJoinPool pool) throws IOException {
+		Tiles tiles = new Tiles(new File(outputDirectory), getMaxZoom());
+		try {
+			pool.invoke(tiles.new Tile(0, 0, 0));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return tiles.written.get();
+	}
+
+	/**
+	 * Make a renderer with the picture of rock DrawMaze uses, or plain rock if it cannot be read
+	 */
+	private static MazeRenderer newRenderer(int roomSize) {
+		try {
+			BufferedImage rock = ImageIO.read(new File("rock3.jpg"));
+			// DrawMaze takes the part of the rock picture the size of the person picture
+			BufferedImage person = ImageIO.read(new File("person.gif"));
+			if (rock != null && person != null) {
+				return new MazeRenderer(roomSize, rock, person.getWidth(), person.getHeight());
+			}
+		} catch (IOException e) {
+			// fall back to plain rock
+		}
+		return new MazeRenderer(roomSize, null, 0, 0);
+	}
+
+	/**
+	 * One run of writeTiles: the steps of the solution sorted by the full size tiles they cross
+	 */
+	private final class Tiles {
+		private final File directory;
+		private final int maxZoom;
+		// the full size tiles across and down
+		private final int across;
+		private final int down;
+		// the steps crossing full size tile t are steps[first[t]] .. steps[first[t + 1] - 1]
+		private final int[] first;
+		private final int[] steps;
+		private final AtomicInteger written = new AtomicInteger();
+
+		Tiles(File directory, int maxZoom) {
+			this.directory = directory;
+			this.maxZoom = maxZoom;
+			across = Math.max(1, (width + TILE_SIZE - 1) / TILE_SIZE);
+			down = Math.max(1, (height + TILE_SIZE - 1) / TILE_SIZE);
+			first = new int[across * down + 1];
+			for (int i = 0; i + 1 < path.length; i++) {
+				for (int tile : tilesOf(i)) {
+					first[tile + 1]++;
+				}
+			}
+			for (int tile = 0; tile < across * down; tile++) {
+				first[tile + 1] += first[tile];
+			}
+			steps = new int[first[across * down]];
+			int[] next = Arrays.copyOf(first, across * down);
+			for (int i = 0; i + 1 < path.length; i++) {
+				for (int tile : tilesOf(i)) {
+					steps[next[tile]++] = i;
+				}
+			}
+		}
+
+		/**
+		 * returns the full size tiles a step of the solution draws on
+		 */
+		private int[] tilesOf(int step) {
+			Rectangle bounds = renderer.stepBounds(grid.getWidth(), path[step], path[step + 1]);
+			int left = Math.max(0, bounds.x / TILE_SIZE);
+			int right = Math.min(across - 1, (bounds.x + bounds.width - 1) / TILE_SIZE);
+			int top = Math.max(0, bounds.y / TILE_SIZE);
+			int bottom = Math.min(down - 1, (bounds.y + bounds.height - 1) / TILE_SIZE);
+			int[] tiles = new int[Math.max(0, (right - left + 1) * (bottom - top + 1))];
+			int count = 0;
+			for (int y = top; y <= bottom; y++) {
+				for (int x = left; x <= right; x++) {
+					tiles[count++] = y * across + x;
+				}
+			}
+			return tiles;
+		}
+
+		/**
+		 * Draws and writes one tile, after the four tiles below it, and returns its pixels
+		 */
+		final class Tile extends RecursiveTask<int[]> {
+			private final int zoom;
+			private final int x;
+			private final int y;
+
+			Tile(int zoom, int x, int y) {
+				this.zoom = zoom;
+				this.x = x;
+				this.y = y;
+			}
+
+			@Override
+			protected int[] compute() {
+				// the full size pixels across one tile at this level
+				long span = (long) TILE_SIZE << (maxZoom - zoom);
+				if (x * span >= Math.max(1, width) || y * span >= Math.max(1, height)) {
+					return null;
+				}
+				BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+				int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+				if (zoom == maxZoom) {
+					Arrays.fill(pixels, OUTSIDE);
+					renderer.drawMaze(image, grid, start, end, x * TILE_SIZE, y * TILE_SIZE);
+					int tile = y * across + x;
+					for (int i = first[tile]; i < first[tile + 1]; i++) {
+						renderer.drawStep(image, grid, path[steps[i]], path[steps[i] + 1], x * TILE_SIZE,
+								y * TILE_SIZE);
+					}
+				} else {
+					Tile[] below = {new Tile(zoom + 1, 2 * x, 2 * y), new Tile(zoom + 1, 2 * x + 1, 2 * y),
+							new Tile(zoom + 1, 2 * x, 2 * y + 1), new Tile(zoom + 1, 2 * x + 1, 2 * y + 1)};
+					invokeAll(below);
+					for (int i = 0; i < below.length; i++) {
+						shrink(below[i].join(), pixels, (i % 2) * TILE_SIZE / 2, (i / 2) * TILE_SIZE / 2);
+					}
+				}
+				write(image);
+				return pixels;
+			}
+
+			private void write(BufferedImage image) {
+				File folder = new File(directory, zoom + File.separator + x);
+				try {
+					Files.createDirectories(folder.toPath());
+					ImageIO.write(image, "png", new File(folder, y + ".png"));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				written.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Shrink a tile to half its size, averaging each two by two block of pixels, into a quarter of another tile
+	 * @param from the pixels of the tile, or null for a tile outside the maze
+	 * @param to the pixels of the tile to draw into
+	 * @param x the left edge of the quarter
+	 * @param y the top edge of the quarter
+	 */
+	private static void shrink(int[] from, int[] to, int x, int y) {
+		int half = TILE_SIZE / 2;
+		for (int row = 0; row < half; row++) {
+			int line = (y + row) * TILE_SIZE + x;
+			if (from == null) {
+				Arrays.fill(to, line, line + half, OUTSIDE);
+				continue;
+			}
+			int top = 2 * row * TILE_SIZE;
+			for (int col = 0; col < half; col++) {
+				int a = from[top + 2 * col];
+				int b = from[top + 2 * col + 1];
+				int c = from[top + TILE_SIZE + 2 * col];
+				int d = from[top + TILE_SIZE + 2 * col + 1];
+				int red = (((a >> 16) & 0xff) + ((b >> 16) & 0xff) + ((c >> 16) & 0xff) + ((d >> 16) & 0xff)) >> 2;
+				int green = (((a >> 8) & 0xff) + ((b >> 8) & 0xff) + ((c >> 8) & 0xff) + ((d >> 8) & 0xff)) >> 2;
+				int blue = ((a & 0xff) + (b & 0xff) + (c & 0xff) + (d & 0xff)) >> 2;
+				to[line + col] = 0xff000000 | (red << 16) | (green << 8) | blue;
+			}
+		}
+	}
+}
@@ -0,0 +1,454 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Reads a maze file by memory mapping it and scanning its bytes. The format
+ * is plain ASCII, so no characters are decoded and no lines or strings are
+ * made: each room and link is handed to a Handler as it is scanned. Files
+ * larger than one mapping can hold are mapped a window at a time.
+ *
+ * The file starts with four header lines (scale factor, width, length and
+ * coins), followed by pairs of lines. In a room line, even characters are
+ * rooms and odd characters join a room to the one on its right; in the wall
+ * line after it, even characters join a room to the one below it.
+ *
+ * Every line only describes its own rooms and their links, so a large file
+ * can also be parsed in bands of whole lines on a ForkJoinPool. Each band
+ * keeps what it finds in its own buffers, and the buffers are handed to the
+ * Handler band by band on the calling thread, so the Handler never has to be
+ * thread safe. Each band is handed over and dropped as soon as it and the
+ * bands before it are parsed. Only the scan runs in parallel; building a
+ * graph from the Handler calls does not, which is why Maze reads a COMPACT
+ * maze into a GridGraph and fills its CSR arrays with CompactGraph.fromGrid.
+ */
+public final class MazeParser {
+
+	/**
+	 * Receives the parts of a maze as they are read
+	 */
+	public interface Handler {
+		/**
+		 * Called once the header has been read, before any room
+		 * @param scale the scale factor for drawing
+		 * @param width the number of rooms in a row
+		 * @param length the number of rows
+		 * @param coins the number of coins
+		 * @throws GraphException if the maze cannot be built
+		 */
+		void header(int scale, int width, int length, int coins) throws GraphException;
+
+		/**
+		 * Called for each room except the plain ones, 'o'
+		 * @param kind the room character
+		 * @param row the row of the room
+		 * @param col the column of the room
+		 * @throws GraphException if the room is invalid
+		 */
+		void room(char kind, int row, int col) throws GraphException;
+
+		/**
+		 * Called for each character between two rooms except the walls, 'w'
+		 * @param code the wall, corridor or door character
+		 * @param node the room on the left or above
+		 * @param neighbour the room on the right or below
+		 * @throws GraphException if the link is invalid
+		 */
+		void link(char code, int node, int neighbour) throws GraphException;
+	}
+
+	// the most bytes mapped at once
+	static final long WINDOW = 1L << 30;
+	private static final int HEADER_LINES = 4;
+	// the bytes copied out of the mapping at a time
+	private static final int BLOCK = 1 << 16;
+	// files smaller than this are parsed on the calling thread
+	static final long PARALLEL_SIZE = 1L << 23;
+	// the fewest bytes in a band
+	private static final long MIN_BAND = 1L << 22;
+
+	private final Handler handler;
+	private final byte[] block = new byte[BLOCK];
+	// the line and column of the next byte
+	private int line;
+	private int col;
+	// the header values, and whether the current header line had a digit
+	private final int[] header = new int[HEADER_LINES];
+	private boolean digits;
+	private int width;
+
+	private MazeParser(Handler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Make a parser for a band of the maze that starts at the given line
+	 */
+	private MazeParser(Handler handler, int width, int line) {
+		this.handler = handler;
+		this.width = width;
+		this.line = line;
+	}
+
+	/**
+	 * Read a maze file
+	 * @param inputFile the input file
+	 * @param handler receives the header, the rooms and the links
+	 * @throws IOException if the file cannot be read or its header is invalid
+	 * @throws GraphException if the handler rejects part of the maze
+	 */
+	public static void parse(String inputFile, Handler handler) throws IOException, GraphException {
+		MazeParser parser = new MazeParser(handler);
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += WINDOW) {
+				parser.scan(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW, size - position)));
+			}
+		}
+		parser.finish();
+	}
+
+	/**
+	 * Read a maze file, parsing bands of it in parallel when it is large
+	 * @param inputFile the input file
+	 * @param handler receives the header, then the rooms and the links in band order
+	 * @param pool the pool to parse the bands on
+	 * @throws IOException if the file cannot be read or its header is invalid
+	 * @throws GraphException if the handler rejects part of the maze
+	 */
+	public static void parse(String inputFile, Handler handler, ForkJoinPool pool)
+			throws IOException, GraphException {
+		if (Files.size(Paths.get(inputFile)) < PARALLEL_SIZE || pool.getParallelism() == 1) {
+			parse(inputFile, handler);
+			return;
+		}
+		parse(inputFile, handler, pool, 0);
+	}
+
+	/**
+	 * Read a maze file in bands on a pool, however small it is
+	 * @param bandBytes the bytes in each band before it is moved on to a line break, or 0 to choose from the file size
+	 */
+	static void parse(String inputFile, Handler handler, ForkJoinPool pool, long bandBytes)
+			throws IOException, GraphException {
+		try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+			MazeParser header = new MazeParser(handler);
+			long body = header.readHeader(channel);
+			if (bandBytes <= 0) {
+				bandBytes = Math.min(WINDOW, Math.max(MIN_BAND, (channel.size() - body) / (pool.getParallelism() * 4L)));
+			}
+			List<Band> bands = split(channel, body, bandBytes);
+
+			// first count the lines of every band, so each knows the line it starts on
+			List<Callable<Band>> tasks = new ArrayList<>();
+			for (Band band : bands) {
+				tasks.add(() -> band.countLines(channel));
+			}
+			invokeAll(pool, tasks);
+			int line = HEADER_LINES;
+			for (Band band : bands) {
+				band.firstLine = line;
+				line += band.lines;
+			}
+
+			// hand each band over as soon as it is parsed, and let it go, so only
+			// the bands still waiting for the ones before them hold their buffers
+			List<Future<Band>> parsed = new ArrayList<>();
+			for (Band band : bands) {
+				parsed.add(pool.submit(() -> band.parse(channel, header.width)));
+			}
+			bands.clear();
+			try {
+				for (int i = 0; i < parsed.size(); i++) {
+					get(parsed.get(i)).replay(handler);
+					parsed.set(i, null);
+				}
+			} finally {
+				for (Future<Band> band : parsed) {
+					if (band != null) {
+						band.cancel(false);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the header a few bytes at a time
+	 * @return the position of the first byte after the header
+	 */
+	private long readHeader(FileChannel channel) throws IOException, GraphException {
+		ByteBuffer bytes = ByteBuffer.wrap(block);
+		long position = 0;
+		while (line < HEADER_LINES) {
+			bytes.clear();
+			int count = channel.read(bytes, position);
+			if (count < 0) {
+				finish();
+			}
+			for (int i = 0; i < count && line < HEADER_LINES; i++) {
+				byte b = block[i];
+				position++;
+				if (b == '\n') {
+					endLine();
+				} else if (b != '\r') {
+					headerByte(b);
+					col++;
+				}
+			}
+		}
+		return position;
+	}
+
+	/**
+	 * Split the file after the header into bands that end just after a line break
+	 */
+	private static List<Band> split(FileChannel channel, long from, long target) throws IOException {
+		long size = channel.size();
+		List<Band> bands = new ArrayList<>();
+		ByteBuffer probe = ByteBuffer.allocate(BLOCK);
+		while (from < size) {
+			long end = Math.min(size, from + target);
+			// move the end forward to the next line break
+			boolean found = end == size;
+			while (!found) {
+				probe.clear();
+				int count = channel.read(probe, end);
+				if (count < 0) {
+					end = size;
+					break;
+				}
+				for (int i = 0; i < count && !found; i++) {
+					end++;
+					found = probe.get(i) == '\n';
+				}
+			}
+			if (end - from > WINDOW) {
+				throw new IOException("Maze line too long");
+			}
+			bands.add(new Band(from, end));
+			from = end;
+		}
+		return bands;
+	}
+
+	private static void invokeAll(ForkJoinPool pool, List<Callable<Band>> tasks) throws IOException, GraphException {
+		for (Future<Band> task : pool.invokeAll(tasks)) {
+			get(task);
+		}
+	}
+
+	/**
+	 * Wait for a band, passing on what went wrong parsing it
+	 */
+	private static Band get(Future<Band> band) throws IOException, GraphException {
+		try {
+			return band.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Parse interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			if (e.getCause() instanceof GraphException) {
+				throw (GraphException) e.getCause();
+			}
+			throw new IOException("Parse failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Scan one window of the file. Lines may run on into the next window.
+	 */
+	private void scan(MappedByteBuffer window) throws IOException, GraphException {
+		while (window.hasRemaining()) {
+			// copying a block out and walking the array is faster than reading the mapping a byte at a time
+			int count = Math.min(block.length, window.remaining());
+			window.get(block, 0, count);
+			for (int i = 0; i < count; i++) {
+				byte b = block[i];
+				if (b == '\n') {
+					endLine();
+				} else if (b != '\r') {
+					if (line < HEADER_LINES) {
+						headerByte(b);
+					} else {
+						cell((char) b);
+					}
+					col++;
+				}
+			}
+		}
+	}
+
+	private void headerByte(byte b) throws IOException {
+		if (b >= '0' && b <= '9') {
+			header[line] = header[line] * 10 + (b - '0');
+			digits = true;
+		} else if (b != ' ' && b != '\t') {
+			throw new IOException("Invalid maze header on line " + (line + 1));
+		}
+	}
+
+	private void cell(char c) throws GraphException {
+		int mazeLine = line - HEADER_LINES;
+		int row = mazeLine >> 1;
+		if ((mazeLine & 1) == 0) {
+			int node = row * width + (col >> 1);
+			if ((col & 1) == 0) {
+				if (c != 'o') {
+					handler.room(c, row, col >> 1);
+				}
+			} else if (c != 'w') {
+				handler.link(c, node, node + 1);
+			}
+		} else if ((col & 1) == 0 && c != 'w') {
+			int node = row * width + (col >> 1);
+			handler.link(c, node, node + width);
+		}
+	}
+
+	private void endLine() throws IOException, GraphException {
+		if (line < HEADER_LINES) {
+			if (!digits) {
+				throw new IOException("Invalid maze header on line " + (line + 1));
+			}
+			digits = false;
+			if (line == HEADER_LINES - 1) {
+				width = header[1];
+				handler.header(header[0], header[1], header[2], header[3]);
+			}
+		}
+		line++;
+		col = 0;
+	}
+
+	/**
+	 * Finish a last line with no line break after it, and check the header was complete
+	 */
+	private void finish() throws IOException, GraphException {
+		if (col > 0) {
+			endLine();
+		}
+		if (line < HEADER_LINES) {
+			throw new IOException("Maze file ends in the header");
+		}
+	}
+
+	/**
+	 * A stretch of whole lines of the file, with the rooms and links found in it
+	 */
+	private static final class Band implements Handler {
+		private final long from;
+		private final long end;
+		// the number of line breaks in the band, and the line it starts on
+		int lines;
+		int firstLine;
+
+		// the rooms other than plain ones, as (kind, row, col) triples
+		private int[] rooms = new int[0];
+		private int roomCount;
+		// the links other than walls: the first room, complemented for links to the room below, and the character
+		private int[] linkNodes = new int[16];
+		private byte[] linkCodes = new byte[16];
+		private int linkCount;
+		private int width;
+		private MazeParser parser;
+
+		Band(long from, long end) {
+			this.from = from;
+			this.end = end;
+		}
+
+		Band countLines(FileChannel channel) throws IOException {
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, from, end - from);
+			byte[] block = new byte[BLOCK];
+			while (window.hasRemaining()) {
+				int count = Math.min(block.length, window.remaining());
+				window.get(block, 0, count);
+				for (int i = 0; i < count; i++) {
+					if (block[i] == '\n') {
+						lines++;
+					}
+				}
+			}
+			return this;
+		}
+
+		Band parse(FileChannel channel, int mazeWidth) throws IOException, GraphException {
+			width = mazeWidth;
+			// a guess at the links in the band; they grow if there are more
+			int capacity = (int) Math.max(16, (end - from) / 8);
+			linkNodes = new int[capacity];
+			linkCodes = new byte[capacity];
+			parser = new MazeParser(this, mazeWidth, firstLine);
+			parser.scan(channel.map(FileChannel.MapMode.READ_ONLY, from, end - from));
+			if (parser.col > 0) {
+				parser.endLine();
+			}
+			parser = null;
+			return this;
+		}
+
+		@Override
+		public void header(int scale, int mazeWidth, int length, int coins) {
+			// bands start after the header
+		}
+
+		@Override
+		public void room(char kind, int row, int col) {
+			if (roomCount + 3 > rooms.length) {
+				rooms = Arrays.copyOf(rooms, Math.max(12, rooms.length * 2));
+			}
+			rooms[roomCount++] = kind;
+			rooms[roomCount++] = row;
+			rooms[roomCount++] = col;
+		}
+
+		@Override
+		public void link(char code, int node, int neighbour) {
+			if (linkCount == linkNodes.length) {
+				linkNodes = Arrays.copyOf(linkNodes, linkCount * 2);
+				linkCodes = Arrays.copyOf(linkCodes, linkCount * 2);
+			}
+			// wall lines are the odd lines after the header
+			boolean down = ((parser.line - HEADER_LINES) & 1) != 0;
+			linkNodes[linkCount] = down ? ~node : node;
+			linkCodes[linkCount] = (byte) code;
+			linkCount++;
+		}
+
+		/**
+		 * Hand everything found in the band to a handler, then drop the buffers
+		 */
+		void replay(Handler handler) throws GraphException {
+			for (int i = 0; i < roomCount; i += 3) {
+				handler.room((char) rooms[i], rooms[i + 1], rooms[i + 2]);
+			}
+			for (int i = 0; i < linkCount; i++) {
+				int node = linkNodes[i];
+				char code = (char) linkCodes[i];
+				if (node < 0) {
+					handler.link(code, ~node, ~node + width);
+				} else {
+					handler.link(code, node, node + 1);
+				}
+			}
+			rooms = null;
+			linkNodes = null;
+			linkCodes = null;
+		}
+	}
+}
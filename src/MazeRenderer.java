@@ -0,0 +1,399 @@
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Draws the cells of a maze into an image. Every kind of cell looks the same
+ * wherever it is, so each one is drawn once, at the room size, into a strip
+ * of tiles; drawing a maze then copies rows of tile pixels into the image,
+ * with no scaling and no text layout per cell.
+ *
+ * Cells are laid out as in the maze file: rows alternate between rooms and
+ * the links below them, so a link is horizontal on an even row and vertical
+ * on an odd one. A maze can be drawn from the characters of the file or from
+ * a GridGraph. Drawing from a GridGraph and drawing a route only write the
+ * pixels of a TYPE_INT_RGB image, without a Graphics, so they need no display
+ * and many threads can draw different images with one renderer at once.
+ */
+public class MazeRenderer {
+
+	// the colours of the maze
+	static final Color ROCK_COLOR = new Color(80, 70, 50);
+	static final Color WALL_COLOR = new Color(255, 100, 100);
+	static final Color PATH_COLOR = new Color(255, 0, 0);
+	static final Color ENTRANCE_COLOR = new Color(100, 100, 100);
+	static final Color EXIT_COLOR = new Color(100, 255, 100);
+	static final Color BACK_COLOR = new Color(195, 195, 215);
+	static final Color DOOR_COLOR = new Color(128, 60, 60);
+	static final Color OPEN_DOOR_COLOR = new Color(255, 255, 255);
+	static final Color[] DOOR_COLORS = {Color.MAGENTA, Color.BLUE, Color.PINK, new Color(80, 225, 80), Color.GRAY,
+			new Color(50, 200, 200), new Color(220, 160, 220), new Color(200, 100, 100), new Color(50, 100, 50),
+			new Color(100, 100, 255)};
+
+	// the tiles, in order along the strip; the entrance and exit are drawn over what is already there
+	private static final int ROCK = 0;
+	private static final int HORIZONTAL_HALL = 1;
+	private static final int VERTICAL_HALL = 2;
+	private static final int START = 3;
+	private static final int EXIT = 4;
+	private static final int HORIZONTAL_DOOR = 5;
+	private static final int VERTICAL_DOOR = HORIZONTAL_DOOR + DOOR_COLORS.length;
+	// doors a route has gone through
+	private static final int OPEN_HORIZONTAL_DOOR = VERTICAL_DOOR + DOOR_COLORS.length;
+	private static final int OPEN_VERTICAL_DOOR = OPEN_HORIZONTAL_DOOR + DOOR_COLORS.length;
+	private static final int TILES = OPEN_VERTICAL_DOOR + DOOR_COLORS.length;
+	// a room, which shows the background and has no tile
+	private static final int NONE = -1;
+
+	// the thickness of a route in pixels
+	private static final int PATH_WIDTH = 3;
+	// the nested outlines drawn around the maze
+	private static final int BORDER = 4;
+
+	private final int roomSize;
+	private final BufferedImage atlas;
+	private final int[] atlasPixels;
+
+	/**
+	 * Constructor for the renderer
+	 * @param roomSize the size of a cell in pixels
+	 * @param rock the picture of rock, or null to draw rock in a plain colour
+	 * @param rockWidth the width of the part of the picture to draw
+	 * @param rockHeight the height of the part of the picture to draw
+	 */
+	public MazeRenderer(int roomSize, BufferedImage rock, int rockWidth, int rockHeight) {
+		this.roomSize = roomSize;
+		atlas = new BufferedImage(Math.max(1, roomSize * TILES), Math.max(1, roomSize), BufferedImage.TYPE_INT_ARGB);
+		Graphics g = atlas.createGraphics();
+		g.setFont(new Font("Serif", Font.PLAIN, roomSize / 3));
+		g.setColor(BACK_COLOR);
+		g.fillRect(0, 0, START * roomSize, roomSize);
+		g.fillRect(HORIZONTAL_DOOR * roomSize, 0, (TILES - HORIZONTAL_DOOR) * roomSize, roomSize);
+		drawRock(g, rock, rockWidth, rockHeight, ROCK * roomSize, 0, roomSize, roomSize);
+		drawHall(g, rock, rockWidth, rockHeight, HORIZONTAL_HALL * roomSize, true);
+		drawHall(g, rock, rockWidth, rockHeight, VERTICAL_HALL * roomSize, false);
+		drawEnd(g, START * roomSize, ENTRANCE_COLOR);
+		drawEnd(g, EXIT * roomSize, EXIT_COLOR);
+		for (int door = 0; door < DOOR_COLORS.length; door++) {
+			drawDoor(g, rock, rockWidth, rockHeight, (HORIZONTAL_DOOR + door) * roomSize, true, door);
+			drawDoor(g, rock, rockWidth, rockHeight, (VERTICAL_DOOR + door) * roomSize, false, door);
+			drawDoor(g, rock, rockWidth, rockHeight, (OPEN_HORIZONTAL_DOOR + door) * roomSize, true, door);
+			drawOpenDoor(g, (OPEN_HORIZONTAL_DOOR + door) * roomSize, true, door);
+			drawDoor(g, rock, rockWidth, rockHeight, (OPEN_VERTICAL_DOOR + door) * roomSize, false, door);
+			drawOpenDoor(g, (OPEN_VERTICAL_DOOR + door) * roomSize, false, door);
+		}
+		g.dispose();
+		atlasPixels = ((DataBufferInt) atlas.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * returns the size of a cell in pixels
+	 * @return the room size
+	 */
+	public int getRoomSize() {
+		return roomSize;
+	}
+
+	/**
+	 * Draw a cell of the maze
+	 * @param target the image, best of type TYPE_INT_RGB, which is copied into directly
+	 * @param cell the character of the cell in the maze file
+	 * @param col the column of the cell
+	 * @param row the row of the cell
+	 * @return false if the cell is a room, which leaves the image as it was
+	 */
+	public boolean drawCell(BufferedImage target, char cell, int col, int row) {
+		int tile = tile(cell, row);
+		if (tile == NONE) {
+			return false;
+		}
+		if (target.getType() != BufferedImage.TYPE_INT_RGB) {
+			int x = col * roomSize;
+			int y = row * roomSize;
+			Graphics g = target.getGraphics();
+			g.drawImage(atlas, x, y, x + roomSize, y + roomSize, tile * roomSize, 0, (tile + 1) * roomSize, roomSize,
+					null);
+			g.dispose();
+			return true;
+		}
+		copyTile(pixels(target), target.getWidth(), target.getHeight(), tile, col * roomSize, row * roomSize);
+		return true;
+	}
+
+	/**
+	 * Draw the part of a maze that falls in an image: the background, the
+	 * outline around the maze and every cell. The whole maze is
+	 * (2 * width - 1) * roomSize by (2 * length - 1) * roomSize pixels, and
+	 * nothing outside it is changed.
+	 * @param target the image, of type TYPE_INT_RGB
+	 * @param grid the rooms and their links
+	 * @param start the entrance
+	 * @param end the exit
+	 * @param x the pixel of the whole maze at the left edge of the image
+	 * @param y the pixel of the whole maze at the top edge of the image
+	 */
+	public void drawMaze(BufferedImage target, GridGraph grid, int start, int end, int x, int y) {
+		int[] pixels = pixels(target);
+		int targetWidth = target.getWidth();
+		int targetHeight = target.getHeight();
+		int cols = 2 * grid.getWidth() - 1;
+		int rows = 2 * grid.getLength() - 1;
+		// the outline is drawn as Graphics.drawRect would, but only inside the maze
+		int mazeRight = Math.max(0, Math.min(targetWidth, cols * roomSize - x));
+		int mazeBottom = Math.max(0, Math.min(targetHeight, rows * roomSize - y));
+		fill(pixels, targetWidth, mazeRight, mazeBottom, -x, -y, cols * roomSize, rows * roomSize,
+				BACK_COLOR.getRGB());
+		for (int i = 0; i < BORDER; i++) {
+			int left = i - x;
+			int top = i - y;
+			int right = cols * roomSize - i - x;
+			int bottom = rows * roomSize - i - y;
+			fill(pixels, targetWidth, mazeRight, mazeBottom, left, top, right - left + 1, 1, ROCK_COLOR.getRGB());
+			fill(pixels, targetWidth, mazeRight, mazeBottom, left, bottom, right - left + 1, 1, ROCK_COLOR.getRGB());
+			fill(pixels, targetWidth, mazeRight, mazeBottom, left, top, 1, bottom - top + 1, ROCK_COLOR.getRGB());
+			fill(pixels, targetWidth, mazeRight, mazeBottom, right, top, 1, bottom - top + 1, ROCK_COLOR.getRGB());
+		}
+		if (roomSize == 0) {
+			return;
+		}
+		int firstCol = Math.max(0, x / roomSize);
+		int lastCol = Math.min(cols - 1, (x + targetWidth - 1) / roomSize);
+		int firstRow = Math.max(0, y / roomSize);
+		int lastRow = Math.min(rows - 1, (y + targetHeight - 1) / roomSize);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int col = firstCol; col <= lastCol; col++) {
+				int tile = tile(grid, start, end, col, row);
+				if (tile != NONE) {
+					copyTile(pixels, targetWidth, targetHeight, tile, col * roomSize - x, row * roomSize - y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Draw one step of a route: the door it goes through, if any, shown open,
+	 * and a line between the middles of the two rooms
+	 * @param target the image, of type TYPE_INT_RGB
+	 * @param grid the rooms and their links
+	 * @param u a room
+	 * @param v the room next to it on the route
+	 * @param x the pixel of the whole maze at the left edge of the image
+	 * @param y the pixel of the whole maze at the top edge of the image
+	 */
+	public void drawStep(BufferedImage target, GridGraph grid, int u, int v, int x, int y) {
+		int[] pixels = pixels(target);
+		int low = Math.min(u, v);
+		int width = grid.getWidth();
+		boolean horizontal = Math.max(u, v) == low + 1;
+		int code = horizontal ? grid.right(low) : grid.lower(low);
+		int col = 2 * (low % width) + (horizontal ? 1 : 0);
+		int row = 2 * (low / width) + (horizontal ? 0 : 1);
+		if (code >= GridGraph.DOOR) {
+			int tile = (horizontal ? OPEN_HORIZONTAL_DOOR : OPEN_VERTICAL_DOOR) + code - GridGraph.DOOR;
+			copyTile(pixels, target.getWidth(), target.getHeight(), tile, col * roomSize - x, row * roomSize - y);
+		}
+		Rectangle line = stepLine(width, u, v);
+		fill(pixels, target.getWidth(), target.getWidth(), target.getHeight(), line.x - x, line.y - y, line.width,
+				line.height, PATH_COLOR.getRGB());
+	}
+
+	/**
+	 * Find the pixels of the whole maze that drawing a step of a route can change
+	 * @param width the number of rooms in a row
+	 * @param u a room
+	 * @param v the room next to it on the route
+	 * @return the area
+	 */
+	public Rectangle stepBounds(int width, int u, int v) {
+		int low = Math.min(u, v);
+		boolean horizontal = Math.max(u, v) == low + 1;
+		int col = 2 * (low % width) + (horizontal ? 1 : 0);
+		int row = 2 * (low / width) + (horizontal ? 0 : 1);
+		Rectangle bounds = new Rectangle(col * roomSize, row * roomSize, roomSize, roomSize);
+		bounds.add(stepLine(width, u, v));
+		return bounds;
+	}
+
+	/**
+	 * returns the line drawn for a step, in pixels of the whole maze
+	 */
+	private Rectangle stepLine(int width, int u, int v) {
+		int low = Math.min(u, v);
+		int offset = roomSize / 2 - 1;
+		int x = (low % width) * 2 * roomSize + offset;
+		int y = (low / width) * 2 * roomSize + offset;
+		if (Math.max(u, v) == low + 1) {
+			return new Rectangle(x, y, 2 * roomSize, PATH_WIDTH);
+		}
+		return new Rectangle(x, y, PATH_WIDTH, 2 * roomSize);
+	}
+
+	private static int[] pixels(BufferedImage target) {
+		if (target.getType() != BufferedImage.TYPE_INT_RGB) {
+			throw new IllegalArgumentException("Image must be of type TYPE_INT_RGB");
+		}
+		return ((DataBufferInt) target.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Copy a tile into the pixels of an image, cutting it off at the edges;
+	 * the entrance and exit only copy what was drawn on them
+	 */
+	private void copyTile(int[] pixels, int targetWidth, int targetHeight, int tile, int x, int y) {
+		int left = Math.max(0, -x);
+		int right = Math.min(roomSize, targetWidth - x);
+		int top = Math.max(0, -y);
+		int bottom = Math.min(roomSize, targetHeight - y);
+		if (left >= right) {
+			return;
+		}
+		int atlasWidth = atlas.getWidth();
+		boolean overlay = tile == START || tile == EXIT;
+		for (int line = top; line < bottom; line++) {
+			int from = line * atlasWidth + tile * roomSize;
+			int to = (y + line) * targetWidth + x;
+			if (!overlay) {
+				System.arraycopy(atlasPixels, from + left, pixels, to + left, right - left);
+				continue;
+			}
+			for (int i = left; i < right; i++) {
+				if (atlasPixels[from + i] >>> 24 != 0) {
+					pixels[to + i] = atlasPixels[from + i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fill a rectangle of an image, cutting it off at the right and bottom limits given and at the image's edges
+	 */
+	private static void fill(int[] pixels, int targetWidth, int limitX, int limitY, int x, int y, int width,
+			int height, int rgb) {
+		int left = Math.max(0, x);
+		int right = Math.min(limitX, x + width);
+		int top = Math.max(0, y);
+		int bottom = Math.min(limitY, y + height);
+		for (int line = top; line < bottom && left < right; line++) {
+			Arrays.fill(pixels, line * targetWidth + left, line * targetWidth + right, rgb);
+		}
+	}
+
+	/**
+	 * returns the tile of a cell of a grid, NONE for a room other than the entrance and exit
+	 */
+	private static int tile(GridGraph grid, int start, int end, int col, int row) {
+		int room = (row / 2) * grid.getWidth() + col / 2;
+		if (row % 2 == 0 && col % 2 == 0) {
+			return room == start ? START : room == end ? EXIT : NONE;
+		}
+		if (row % 2 == 1 && col % 2 == 1) {
+			return ROCK;
+		}
+		boolean horizontal = row % 2 == 0;
+		int code = horizontal ? grid.right(room) : grid.lower(room);
+		if (code == GridGraph.WALL) {
+			return ROCK;
+		}
+		if (code == GridGraph.CORRIDOR) {
+			return horizontal ? HORIZONTAL_HALL : VERTICAL_HALL;
+		}
+		return (horizontal ? HORIZONTAL_DOOR : VERTICAL_DOOR) + code - GridGraph.DOOR;
+	}
+
+	/**
+	 * returns the tile of a cell on a row, NONE for a room
+	 */
+	private static int tile(char cell, int row) {
+		boolean horizontal = row % 2 == 0;
+		switch (cell) {
+			case 's':
+				return START;
+			case 'x':
+				return EXIT;
+			case 'w':
+				return ROCK;
+			case 'c':
+				return horizontal ? HORIZONTAL_HALL : VERTICAL_HALL;
+			case 'o':
+				return NONE;
+			default:
+				if (cell >= '0' && cell <= '9') {
+					return (horizontal ? HORIZONTAL_DOOR : VERTICAL_DOOR) + cell - '0';
+				}
+				throw new IllegalArgumentException("Invalid character: " + cell);
+		}
+	}
+
+	private static void drawRock(Graphics g, BufferedImage rock, int rockWidth, int rockHeight, int x, int y,
+			int width, int height) {
+		if (rock == null) {
+			g.setColor(ROCK_COLOR);
+			g.fillRect(x, y, width, height);
+		} else {
+			g.drawImage(rock, x, y, x + width, y + height, 1, 1, rockWidth, rockHeight, null);
+		}
+	}
+
+	/**
+	 * Draw a passage: the background with rock along both sides
+	 */
+	private void drawHall(Graphics g, BufferedImage rock, int rockWidth, int rockHeight, int x, boolean horizontal) {
+		if (horizontal) {
+			drawRock(g, rock, rockWidth, rockHeight, x, 0, roomSize, roomSize / 5);
+			drawRock(g, rock, rockWidth, rockHeight, x, 4 * roomSize / 5, roomSize, roomSize - 4 * roomSize / 5);
+		} else {
+			drawRock(g, rock, rockWidth, rockHeight, x, 0, roomSize / 5, roomSize);
+			drawRock(g, rock, rockWidth, rockHeight, x + 4 * roomSize / 5, 0, roomSize - 4 * roomSize / 5, roomSize);
+		}
+	}
+
+	/**
+	 * Draw a door: a passage with a band of the door's colour and its cost written on it
+	 */
+	private void drawDoor(Graphics g, BufferedImage rock, int rockWidth, int rockHeight, int x, boolean horizontal,
+			int cost) {
+		g.setColor(DOOR_COLORS[cost]);
+		if (horizontal) {
+			g.fillRect(x + roomSize / 4, 0, roomSize / 2, roomSize);
+		} else {
+			g.fillRect(x, roomSize / 4, roomSize, roomSize / 2);
+		}
+		g.setColor(Color.WHITE);
+		g.drawString(String.valueOf(cost), x + (int) (0.4 * roomSize), (int) (0.6 * roomSize));
+		drawHall(g, rock, rockWidth, rockHeight, x, horizontal);
+	}
+
+	/**
+	 * Draw a door a route has gone through over the closed door: a white panel with the cost in black
+	 */
+	private void drawOpenDoor(Graphics g, int x, boolean horizontal, int cost) {
+		g.setColor(OPEN_DOOR_COLOR);
+		if (horizontal) {
+			g.fillRect(x + roomSize / 4, roomSize / 5, roomSize / 2, 3 * roomSize / 5);
+			g.setColor(Color.BLACK);
+			g.drawString(String.valueOf(cost), x + (int) (0.4 * roomSize), (int) (0.6 * roomSize));
+		} else {
+			g.fillRect(x + roomSize / 5, roomSize / 4, 3 * roomSize / 5, roomSize / 2);
+			g.setColor(Color.BLACK);
+			g.drawString(String.valueOf(cost), x + (int) (0.6 * roomSize), (int) (0.6 * roomSize));
+		}
+	}
+
+	/**
+	 * Draw the entrance or the exit: a door ajar in the given colour
+	 */
+	private void drawEnd(Graphics g, int x, Color color) {
+		g.setColor(color);
+		g.fillRect(x + 2 * roomSize / 5, roomSize / 5, 2 * roomSize / 5, 3 * roomSize / 5);
+		int[] xcoor = {x + 2 * roomSize / 5, x + roomSize / 5, x + roomSize / 5, x + 2 * roomSize / 5};
+		int[] ycoor = {roomSize / 5, roomSize / 10, 7 * roomSize / 10, 4 * roomSize / 5};
+		g.setColor(DOOR_COLOR);
+		g.fillPolygon(xcoor, ycoor, 4);
+		g.setColor(WALL_COLOR);
+		g.fillOval(x + 2 * roomSize / 10, 4 * roomSize / 10, roomSize / 10, roomSize / 10);
+	}
+}
@@ -0,0 +1,248 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A level synchronous breadth first search that expands each level of the
+ * frontier on a ForkJoinPool. It answers the same question as
+ * PathSearch.fewestRooms, the path through the fewest rooms the coins can pay
+ * for, and reads the graph only through IndexedGraph, so the graph must not be
+ * modified while it runs. Search state is kept in the search itself: the most
+ * coins held at each node so far is an AtomicIntegerArray raised by
+ * compare-and-set, so a (node, coins) state enters the next level only once.
+ */
+public final class ParallelSearch {
+
+	// frontiers smaller than this are expanded on the calling thread
+	private static final int SEQUENTIAL_LEVEL = 4096;
+	// the fewest states a worker is handed
+	private static final int MIN_CHUNK = 1024;
+
+	private ParallelSearch() {
+	}
+
+	/**
+	 * Parallel breadth first search for the path through the fewest rooms that the coins can pay for
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @param pool the pool to expand large levels on
+	 * @return the path, or null if there is none
+	 */
+	public static int[] fewestRooms(IndexedGraph graph, int start, int end, int coins, ForkJoinPool pool) {
+		return fewestRooms(graph, start, end, coins, pool, null);
+	}
+
+	/**
+	 * fewestRooms, counting into stats once per level
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] fewestRooms(IndexedGraph graph, int start, int end, int coins, ForkJoinPool pool,
+			SolveStats stats) {
+		if (start == end) {
+			return new int[] {start};
+		}
+		// one more than the most coins held at each node, 0 if never reached
+		AtomicIntegerArray bestCoins = new AtomicIntegerArray(graph.numNodes());
+		bestCoins.set(start, coins + 1);
+		// every level so far; a state's parent is its index in the level before
+		List<Level> levels = new ArrayList<>();
+		Level frontier = new Level(1);
+		frontier.add(start, coins, -1);
+		levels.add(frontier);
+
+		while (frontier.size > 0) {
+			Level next;
+			if (frontier.size < SEQUENTIAL_LEVEL || pool.getParallelism() == 1) {
+				next = expand(graph, frontier, 0, frontier.size, bestCoins);
+			} else {
+				next = expandParallel(graph, frontier, bestCoins, pool);
+			}
+			if (stats != null) {
+				stats.visited(frontier.size);
+				stats.frontier(frontier.size);
+				stats.considered(next.considered, next.unaffordable);
+			}
+			// only the nodes and parents of old levels are needed for the path
+			frontier.coins = null;
+			levels.add(next);
+			for (int i = 0; i < next.size; i++) {
+				if (next.nodes[i] == end) {
+					return path(levels, i);
+				}
+			}
+			if (stats != null) {
+				for (int i = 0; i < frontier.size; i++) {
+					if (stats.halted(frontier.nodes[i])) {
+						return partialPath(levels, stats.closest());
+					}
+				}
+			}
+			frontier = next;
+		}
+		return null;
+	}
+
+	/**
+	 * Expand a level in chunks on the pool and join the chunks' results in order
+	 */
+	private static Level expandParallel(IndexedGraph graph, Level frontier, AtomicIntegerArray bestCoins,
+			ForkJoinPool pool) {
+		int chunk = Math.max(MIN_CHUNK, frontier.size / (pool.getParallelism() * 4));
+		List<Callable<Level>> tasks = new ArrayList<>();
+		for (int from = 0; from < frontier.size; from += chunk) {
+			int first = from;
+			int last = Math.min(frontier.size, from + chunk);
+			tasks.add(() -> expand(graph, frontier, first, last, bestCoins));
+		}
+		List<Level> parts = new ArrayList<>();
+		try {
+			for (Future<Level> part : pool.invokeAll(tasks)) {
+				parts.add(part.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Search interrupted");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Search failed", e.getCause());
+		}
+		int size = 0;
+		for (Level part : parts) {
+			size += part.size;
+		}
+		Level next = new Level(size);
+		for (Level part : parts) {
+			next.append(part);
+			next.considered += part.considered;
+			next.unaffordable += part.unaffordable;
+		}
+		return next;
+	}
+
+	/**
+	 * Expand the states first .. last-1 of a level
+	 * @return the states they reach that hold more coins than any state before at the same node
+	 */
+	private static Level expand(IndexedGraph graph, Level frontier, int first, int last,
+			AtomicIntegerArray bestCoins) {
+		Level next = new Level(Math.max(16, last - first));
+		// workers report to the sink as they go, so events from one level interleave
+		TraceSink sink = Trace.sink();
+		for (int state = first; state < last; state++) {
+			int node = frontier.nodes[state];
+			if (sink != null) {
+				sink.nodeVisited(node, frontier.coins[state]);
+			}
+			int degree = graph.degree(node);
+			for (int i = 0; i < degree; i++) {
+				int neighbour = graph.neighbour(node, i);
+				int remaining = frontier.coins[state] - graph.edgeType(node, i);
+				if (sink != null) {
+					sink.edgeConsidered(node, neighbour, remaining);
+				}
+				next.considered++;
+				if (remaining < 0) {
+					next.unaffordable++;
+				}
+				if (remaining >= 0 && raise(bestCoins, neighbour, remaining + 1)) {
+					next.add(neighbour, remaining, state);
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Raise the value at an index if it is below the given one
+	 * @return true if this call raised it
+	 */
+	private static boolean raise(AtomicIntegerArray values, int index, int value) {
+		int seen = values.get(index);
+		while (value > seen) {
+			if (values.compareAndSet(index, seen, value)) {
+				return true;
+			}
+			seen = values.get(index);
+		}
+		return false;
+	}
+
+	/**
+	 * Follow parents from a state of the last level back to the start
+	 */
+	private static int[] path(List<Level> levels, int state) {
+		int[] path = new int[levels.size()];
+		for (int depth = levels.size() - 1; depth >= 0; depth--) {
+			Level level = levels.get(depth);
+			path[depth] = level.nodes[state];
+			state = level.parents[state];
+		}
+		return path;
+	}
+
+	/**
+	 * returns the route to the first state reached at a node, or null if no state is
+	 */
+	private static int[] partialPath(List<Level> levels, int node) {
+		for (int depth = 0; depth < levels.size(); depth++) {
+			Level level = levels.get(depth);
+			for (int state = 0; state < level.size; state++) {
+				if (level.nodes[state] == node) {
+					return path(levels.subList(0, depth + 1), state);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The states at one distance from the start, in parallel int arrays
+	 */
+	private static final class Level {
+		int[] nodes;
+		int[] coins;
+		int[] parents;
+		int size;
+		// the edges looked at while making this level, and how many of them the coins could not pay for
+		long considered;
+		long unaffordable;
+
+		Level(int capacity) {
+			nodes = new int[capacity];
+			coins = new int[capacity];
+			parents = new int[capacity];
+		}
+
+		void add(int node, int remainingCoins, int parent) {
+			if (size == nodes.length) {
+				grow(Math.max(16, size * 2));
+			}
+			nodes[size] = node;
+			coins[size] = remainingCoins;
+			parents[size] = parent;
+			size++;
+		}
+
+		void append(Level other) {
+			if (size + other.size > nodes.length) {
+				grow(size + other.size);
+			}
+			System.arraycopy(other.nodes, 0, nodes, size, other.size);
+			System.arraycopy(other.coins, 0, coins, size, other.size);
+			System.arraycopy(other.parents, 0, parents, size, other.size);
+			size += other.size;
+		}
+
+		private void grow(int capacity) {
+			nodes = Arrays.copyOf(nodes, capacity);
+			coins = Arrays.copyOf(coins, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+		}
+	}
+}
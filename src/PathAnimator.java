@@ -0,0 +1,224 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.Timer;
+
+/**
+ * Animates a solution on a PathDisplay, such as DrawMaze, at a steady frame
+ * rate. Any thread can queue edges; a Swing timer takes the edges due in each
+ * frame off the queue and draws them on the event dispatch thread as one
+ * batch with one repaint, so a long path costs one repaint per frame rather
+ * than one per edge, and the thread queueing the path never waits for the
+ * drawing.
+ *
+ * The animator can also show a search as it runs. frontier() returns a
+ * TraceSink that keeps the rooms the search visits in a fixed ring, without
+ * locks or allocation, and each frame marks the rooms added since the last
+ * one. If the search outruns the frames, older rooms are dropped from the
+ * ring rather than holding the search up.
+ */
+public class PathAnimator {
+
+	// the frame rate used by Solve
+	public static final int DEFAULT_FPS = 60;
+	// the rooms kept for drawing between frames
+	static final int FRONTIER_RING = 1 << 14;
+	// the most edges drawn in one call, so the frame time can be checked between calls
+	private static final int BATCH = 4096;
+
+	private final PathDisplay display;
+	private final Timer timer;
+	// nanoseconds between edges, 0 to draw as many as a frame has time for
+	private final long edgeNanos;
+	private final long frameNanos;
+
+	// the queued edges, queue[2i] to queue[2i + 1] for i from read to size - 1
+	private int[] queue = new int[2 * BATCH];
+	private int read;
+	private int size;
+	// edges taken off the queue but not drawn yet
+	private int drawing;
+	// the time the edges drawn so far were due by, under pacing
+	private long due;
+
+	// the rooms visited by the search, the last FRONTIER_RING of them kept
+	private final int[] visited = new int[FRONTIER_RING];
+	private final AtomicLong recorded = new AtomicLong();
+	// the rooms recorded that have been drawn or dropped, only used by the timer
+	private long shown;
+
+	// the batch handed to the display, only used by the timer
+	private final int[] batch = new int[2 * BATCH];
+
+	/**
+	 * Constructor for the animator; call start to begin drawing
+	 * @param display the maze to draw on
+	 * @param fps the frames per second
+	 * @param delay the milliseconds between edges, as in Solve, or 0 to draw each edge in the next frame
+	 */
+	public PathAnimator(PathDisplay display, int fps, int delay) {
+		if (fps <= 0 || delay < 0) {
+			throw new IllegalArgumentException("Invalid frame rate or delay");
+		}
+		this.display = display;
+		edgeNanos = delay * 1000000L;
+		frameNanos = 1000000000L / fps;
+		timer = new Timer(Math.max(1, 1000 / fps), e -> frame());
+		timer.setCoalesce(true);
+	}
+
+	/**
+	 * Start drawing frames
+	 */
+	public void start() {
+		synchronized (this) {
+			due = System.nanoTime();
+		}
+		timer.start();
+	}
+
+	/**
+	 * Stop drawing frames; edges still queued are not drawn
+	 */
+	public void stop() {
+		timer.stop();
+	}
+
+	/**
+	 * Queue an edge of the solution
+	 * @param u the room the edge leaves
+	 * @param v the room it enters
+	 */
+	public synchronized void addEdge(int u, int v) {
+		if (size == queue.length / 2) {
+			if (read > 0) {
+				// drop the edges already drawn before growing
+				System.arraycopy(queue, 2 * read, queue, 0, 2 * (size - read));
+				size -= read;
+				read = 0;
+			}
+			if (size == queue.length / 2) {
+				queue = Arrays.copyOf(queue, queue.length * 2);
+			}
+		}
+		queue[2 * size] = u;
+		queue[2 * size + 1] = v;
+		size++;
+	}
+
+	/**
+	 * Queue every edge of a solution
+	 * @param path the rooms of the solution, in order
+	 */
+	public void addPath(Iterator<GraphNode> path) {
+		if (!path.hasNext()) {
+			return;
+		}
+		int u = path.next().getName();
+		while (path.hasNext()) {
+			int v = path.next().getName();
+			addEdge(u, v);
+			u = v;
+		}
+	}
+
+	/**
+	 * Wait until every queued edge has been drawn, then stop drawing frames
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void finish() throws InterruptedException {
+		synchronized (this) {
+			while (read < size || drawing > 0) {
+				wait();
+			}
+		}
+		timer.stop();
+	}
+
+	/**
+	 * returns a sink that shows the rooms a search visits, for Trace.setSink
+	 * @return the sink
+	 */
+	public TraceSink frontier() {
+		return new TraceSink() {
+			@Override
+			public void nodeVisited(int u, int coins) {
+				// searches running at once may overwrite each other's rooms, which only loses a dot
+				long n = recorded.get();
+				visited[(int) (n & (FRONTIER_RING - 1))] = u;
+				recorded.lazySet(n + 1);
+			}
+
+			@Override
+			public void edgeConsidered(int u, int v, int coins) {
+				// only the rooms are shown
+			}
+
+			@Override
+			public void backtrack(int u) {
+			}
+		};
+	}
+
+	/**
+	 * Draw one frame: the rooms visited since the last frame, then the edges now due
+	 */
+	private void frame() {
+		long begin = System.nanoTime();
+		long end = recorded.get();
+		// rooms overwritten in the ring before this frame are dropped
+		shown = Math.max(shown, end - FRONTIER_RING);
+		while (shown < end) {
+			int count = (int) Math.min(batch.length, end - shown);
+			for (int i = 0; i < count; i++) {
+				batch[i] = visited[(int) ((shown + i) & (FRONTIER_RING - 1))];
+			}
+			display.drawVisited(batch, count);
+			shown += count;
+		}
+
+		// spend at most half a frame on edges, so the window stays responsive
+		long limit = begin + frameNanos / 2;
+		int count;
+		do {
+			count = take(begin);
+			try {
+				display.drawEdges(batch, count);
+			} finally {
+				drawn();
+			}
+		} while (count == BATCH && System.nanoTime() < limit);
+	}
+
+	/**
+	 * Take the edges due by the given time off the queue, at most BATCH
+	 * @return the number of edges copied into batch
+	 */
+	private synchronized int take(long now) {
+		int count = Math.min(BATCH, size - read);
+		if (edgeNanos > 0) {
+			// never let a slow frame build up a burst of edges
+			due = Math.max(due, now - frameNanos);
+			count = (int) Math.min(count, (now - due) / edgeNanos);
+			due += count * edgeNanos;
+		}
+		System.arraycopy(queue, 2 * read, batch, 0, 2 * count);
+		read += count;
+		if (read == size) {
+			read = 0;
+			size = 0;
+		}
+		drawing = count;
+		return count;
+	}
+
+	/**
+	 * Note that the edges last taken have been drawn, waking finish if the queue is empty
+	 */
+	private synchronized void drawn() {
+		drawing = 0;
+		if (read == size) {
+			notifyAll();
+		}
+	}
+}
@@ -0,0 +1,14 @@
+/**
+ * What a PathAnimator draws on, see DrawMaze. Both methods are called on the
+ * event dispatch thread with a batch the animator reuses, so they must not
+ * keep the array.
+ */
+public interface PathDisplay {
+
+  /* Draws edges of the solution, edges[2i] to edges[2i+1] for i below count,
+     with one repaint. */
+  public void drawEdges(int[] edges, int count);
+
+  /* Marks the first count rooms as visited by the search, with one repaint. */
+  public void drawVisited(int[] rooms, int count);
+}
@@ -0,0 +1,536 @@
+import java.util.Arrays;
+
+/**
+ * Path searches over an IndexedGraph. Every search takes the start and end
+ * nodes and the number of coins available, where crossing an edge costs as
+ * many coins as its type, and returns the names of the nodes on the path
+ * from start to end, or null if there is no such path.
+ *
+ * The searches only read the graph and keep their per-node state in a
+ * SearchScratch, so many of them can run over one graph at the same time.
+ * They report the nodes they expand and the edges they look at to the
+ * TraceSink set in Trace, if any. Each search also has a form taking a
+ * SolveStats, which it counts into as it runs; the stats may be null. If the
+ * stats hold a budget and it runs out, the search returns the route to the
+ * room nearest the end it has reached instead.
+ */
+public final class PathSearch {
+
+	// depth first search: on-path marker in the scratch table when not remembering states
+	private static final int ON_PATH = 1;
+
+	// fields of a depth first search frame
+	private static final int NODE = 0;
+	private static final int CURSOR = 1;
+	private static final int COINS = 2;
+	private static final int FRAME = 3;
+
+	// fewest coins search: scratch tables
+	private static final int SPENT = 0;
+	private static final int ROOMS = 1;
+	private static final int PARENT = 2;
+
+	// A* search: scratch tables
+	private static final int CLOSED_COINS = 0;
+	private static final int QUEUED_ROOMS = 1;
+	private static final int QUEUED_COINS = 2;
+
+	private PathSearch() {
+	}
+
+	/**
+	 * Depth first search that follows the edges of each node in order and
+	 * never revisits a node already on the path. It finds the same path as the
+	 * recursive search it replaces, but keeps its frames in an int array so the
+	 * path length is not limited by the thread stack, and allocates nothing per step.
+	 *
+	 * A node is released again on backtrack, so the same (node, coins) state
+	 * can be explored once for every path leading to it, which is exponential
+	 * in the worst case.
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @return the path, or null if there is none
+	 */
+	public static int[] depthFirst(IndexedGraph graph, int start, int end, int coins) {
+		return depthFirst(graph, start, end, coins, null);
+	}
+
+	/**
+	 * depthFirst, counting into stats
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] depthFirst(IndexedGraph graph, int start, int end, int coins, SolveStats stats) {
+		return depthFirst(graph, start, end, coins, false, stats);
+	}
+
+	/**
+	 * Depth first search that remembers the most coins it has ever held at each
+	 * node and only enters a node again with more than that. Anything reachable
+	 * with fewer coins was already reachable then, so nothing is lost, and each
+	 * node is expanded at most coins + 1 times. Since coins never grow along a
+	 * path, a node on the current path always blocks itself, and the path
+	 * found is still simple.
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @return the path, or null if there is none
+	 */
+	public static int[] memoDepthFirst(IndexedGraph graph, int start, int end, int coins) {
+		return memoDepthFirst(graph, start, end, coins, null);
+	}
+
+	/**
+	 * memoDepthFirst, counting into stats
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] memoDepthFirst(IndexedGraph graph, int start, int end, int coins, SolveStats stats) {
+		return depthFirst(graph, start, end, coins, true, stats);
+	}
+
+	/**
+	 * The depth first search loop
+	 * @param remember true to keep (node, coins) states visited after backtracking
+	 */
+	private static int[] depthFirst(IndexedGraph graph, int start, int end, int coins, boolean remember,
+			SolveStats stats) {
+		if (start == end) {
+			return new int[] {start};
+		}
+		// when remembering, the most coins held at each node so far, -1 if never reached;
+		// otherwise ON_PATH for the nodes on the current path
+		SearchScratch seen = SearchScratch.acquire(graph.numNodes(), -1);
+		try {
+			return depthFirst(graph, start, end, coins, remember, seen, stats);
+		} finally {
+			seen.release();
+		}
+	}
+
+	private static int[] depthFirst(IndexedGraph graph, int start, int end, int coins, boolean remember,
+			SearchScratch seen, SolveStats stats) {
+		TraceSink sink = Trace.sink();
+		seen.set(0, start, remember ? coins : ON_PATH);
+		if (sink != null) {
+			sink.nodeVisited(start, coins);
+		}
+		if (stats != null) {
+			stats.visited(1);
+			stats.depth(1);
+			stats.frontier(1);
+			if (stats.halted(start)) {
+				return new int[] {start};
+			}
+		}
+		int[] stack = new int[FRAME * 64];
+		int top = 0;
+		stack[NODE] = start;
+		stack[CURSOR] = 0;
+		stack[COINS] = coins;
+
+		while (top >= 0) {
+			int frame = top * FRAME;
+			int node = stack[frame + NODE];
+			int cursor = stack[frame + CURSOR];
+			if (cursor == graph.degree(node)) {
+				// every edge tried, backtrack
+				if (!remember) {
+					seen.set(0, node, -1);
+				}
+				if (sink != null) {
+					sink.backtrack(node);
+				}
+				if (stats != null) {
+					stats.backtracked();
+				}
+				top--;
+				continue;
+			}
+			stack[frame + CURSOR] = cursor + 1;
+			int next = graph.neighbour(node, cursor);
+			int remaining = stack[frame + COINS] - graph.edgeType(node, cursor);
+			if (sink != null) {
+				sink.edgeConsidered(node, next, remaining);
+			}
+			if (stats != null) {
+				stats.considered(1, remaining < 0 ? 1 : 0);
+			}
+			if (remaining < 0 || (remember ? remaining <= seen.get(0, next) : seen.get(0, next) == ON_PATH)) {
+				continue;
+			}
+			if (next == end) {
+				int[] path = new int[top + 2];
+				for (int i = 0; i <= top; i++) {
+					path[i] = stack[i * FRAME + NODE];
+				}
+				path[top + 1] = end;
+				return path;
+			}
+			top++;
+			frame += FRAME;
+			if (frame + FRAME > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			stack[frame + NODE] = next;
+			stack[frame + CURSOR] = 0;
+			stack[frame + COINS] = remaining;
+			seen.set(0, next, remember ? remaining : ON_PATH);
+			if (sink != null) {
+				sink.nodeVisited(next, remaining);
+			}
+			if (stats != null) {
+				// the stack is the depth first frontier
+				stats.visited(1);
+				stats.depth(top + 1);
+				stats.frontier(top + 1);
+				if (stats.halted(next)) {
+					return stackPath(stack, top, stats);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Breadth first search for the path through the fewest rooms that the
+	 * coins can pay for. A node is only entered again if it is reached with
+	 * more coins than any earlier visit, since fewer coins can open no new doors;
+	 * each node is therefore expanded at most coins + 1 times.
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @return the path, or null if there is none
+	 */
+	public static int[] fewestRooms(IndexedGraph graph, int start, int end, int coins) {
+		return fewestRooms(graph, start, end, coins, (SolveStats) null);
+	}
+
+	/**
+	 * fewestRooms, counting into stats
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] fewestRooms(IndexedGraph graph, int start, int end, int coins, SolveStats stats) {
+		if (start == end) {
+			return new int[] {start};
+		}
+		// the most coins any state has held at each node, -1 if never reached
+		SearchScratch bestCoins = SearchScratch.acquire(graph.numNodes(), -1);
+		try {
+			return fewestRooms(graph, start, end, coins, bestCoins, stats);
+		} finally {
+			bestCoins.release();
+		}
+	}
+
+	private static int[] fewestRooms(IndexedGraph graph, int start, int end, int coins, SearchScratch bestCoins,
+			SolveStats stats) {
+		bestCoins.set(0, start, coins);
+		SearchStates states = new SearchStates(graph.numNodes());
+		states.add(start, coins, -1);
+
+		TraceSink sink = Trace.sink();
+
+		// the states are numbered in the order they were reached, so they are their own queue
+		for (int state = 0; state < states.size(); state++) {
+			int node = states.node(state);
+			if (sink != null) {
+				sink.nodeVisited(node, states.coins(state));
+			}
+			int degree = graph.degree(node);
+			if (stats != null) {
+				stats.visited(1);
+				stats.frontier(states.size() - state);
+				stats.considered(degree, unaffordable(graph, node, states.coins(state)));
+				if (stats.halted(node)) {
+					return partialPath(states, stats.closest());
+				}
+			}
+			for (int i = 0; i < degree; i++) {
+				int next = graph.neighbour(node, i);
+				int remaining = states.coins(state) - graph.edgeType(node, i);
+				if (sink != null) {
+					sink.edgeConsidered(node, next, remaining);
+				}
+				if (remaining <= bestCoins.get(0, next)) {
+					continue;
+				}
+				bestCoins.set(0, next, remaining);
+				int reached = states.add(next, remaining, state);
+				if (next == end) {
+					return states.path(reached);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Dijkstra's algorithm for the path that spends the fewest coins, taking
+	 * the one through the fewest rooms among those. Paths are ranked by
+	 * (coins spent, rooms), which is a plain shortest path problem over the
+	 * nodes: the cheapest way to reach a node leaves the most coins for the
+	 * rest of the path, so the coins left need not be part of the state.
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @return the path, or null if there is none the coins can pay for
+	 */
+	public static int[] fewestCoins(IndexedGraph graph, int start, int end, int coins) {
+		return fewestCoins(graph, start, end, coins, (SolveStats) null);
+	}
+
+	/**
+	 * fewestCoins, counting into stats
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] fewestCoins(IndexedGraph graph, int start, int end, int coins, SolveStats stats) {
+		// the coins spent and rooms crossed on the best known path to each node, and its parent
+		SearchScratch best = SearchScratch.acquire(graph.numNodes(), Integer.MAX_VALUE, Integer.MAX_VALUE, -1);
+		try {
+			return fewestCoins(graph, start, end, coins, best, stats);
+		} finally {
+			best.release();
+		}
+	}
+
+	private static int[] fewestCoins(IndexedGraph graph, int start, int end, int coins, SearchScratch best,
+			SolveStats stats) {
+		IntMinHeap heap = new IntMinHeap(16);
+		best.set(SPENT, start, 0);
+		best.set(ROOMS, start, 0);
+		heap.push(0, start);
+		TraceSink sink = Trace.sink();
+
+		while (!heap.isEmpty()) {
+			long key = heap.minKey();
+			int node = heap.pop();
+			if (key != distance(best, node)) {
+				// a cheaper entry for this node was already expanded
+				continue;
+			}
+			int held = coins - (int) (key >>> 32);
+			if (sink != null) {
+				sink.nodeVisited(node, held);
+			}
+			if (stats != null) {
+				stats.visited(1);
+				stats.frontier(heap.size() + 1);
+			}
+			if (node == end) {
+				return key >>> 32 <= coins ? tracePath(best, PARENT, end) : null;
+			}
+			if (stats != null && stats.halted(node)) {
+				return tracePath(best, PARENT, stats.closest());
+			}
+			int degree = graph.degree(node);
+			if (stats != null) {
+				stats.considered(degree, unaffordable(graph, node, held));
+			}
+			for (int i = 0; i < degree; i++) {
+				int next = graph.neighbour(node, i);
+				int type = graph.edgeType(node, i);
+				if (sink != null) {
+					sink.edgeConsidered(node, next, held - type);
+				}
+				long candidate = key + ((long) type << 32) + 1;
+				if (candidate < distance(best, next)) {
+					best.set(SPENT, next, (int) (candidate >>> 32));
+					best.set(ROOMS, next, (int) candidate);
+					best.set(PARENT, next, node);
+					heap.push(candidate, next);
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * returns the number of edges of a node that cost more than the coins held
+	 */
+	private static int unaffordable(IndexedGraph graph, int node, int coins) {
+		int count = 0;
+		int degree = graph.degree(node);
+		for (int i = 0; i < degree; i++) {
+			if (graph.edgeType(node, i) > coins) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * returns (coins spent << 32) | rooms for the best known path to a node, Long.MAX_VALUE if none
+	 */
+	private static long distance(SearchScratch best, int node) {
+		int spent = best.get(SPENT, node);
+		return spent == Integer.MAX_VALUE ? Long.MAX_VALUE : ((long) spent << 32) | best.get(ROOMS, node);
+	}
+
+	/**
+	 * A* search for the path through the fewest rooms that the coins can pay
+	 * for, on a graph whose node names are row * width + col and whose edges
+	 * join rooms one row or column apart. The Manhattan distance to the end is
+	 * then a consistent estimate of the rooms still to go.
+	 *
+	 * States (node, coins left) are ranked by rooms so far plus that estimate,
+	 * ties going to the state furthest along. For a given node they leave the
+	 * heap in order of rooms so far, so a state is only expanded if it holds
+	 * more coins than every earlier expansion of its node.
+	 * @param graph the graph
+	 * @param start the first node
+	 * @param end the last node
+	 * @param coins the coins available
+	 * @param width the number of rooms in a row, or 0 if the graph is not a grid
+	 * @return the path, or null if there is none
+	 */
+	public static int[] aStar(IndexedGraph graph, int start, int end, int coins, int width) {
+		return aStar(graph, start, end, coins, width, null);
+	}
+
+	/**
+	 * aStar, counting into stats
+	 * @param stats the counters to fill in, or null
+	 */
+	public static int[] aStar(IndexedGraph graph, int start, int end, int coins, int width, SolveStats stats) {
+		// the most coins any expanded state has held at each node, -1 if never expanded;
+		// the fewest rooms of any state queued at each node, and the most coins queued with that many
+		SearchScratch seen = SearchScratch.acquire(graph.numNodes(), -1, Integer.MAX_VALUE, 0);
+		try {
+			return aStar(graph, start, end, coins, width, seen, stats);
+		} finally {
+			seen.release();
+		}
+	}
+
+	private static int[] aStar(IndexedGraph graph, int start, int end, int coins, int width, SearchScratch seen,
+			SolveStats stats) {
+		SearchStates states = new SearchStates(16);
+		IntMinHeap heap = new IntMinHeap(16);
+		heap.push(rank(0, estimate(start, end, width)), states.add(start, coins, -1));
+		TraceSink sink = Trace.sink();
+
+		while (!heap.isEmpty()) {
+			long key = heap.minKey();
+			int state = heap.pop();
+			int node = states.node(state);
+			int remaining = states.coins(state);
+			if (remaining <= seen.get(CLOSED_COINS, node)) {
+				continue;
+			}
+			seen.set(CLOSED_COINS, node, remaining);
+			if (sink != null) {
+				sink.nodeVisited(node, remaining);
+			}
+			if (stats != null) {
+				stats.visited(1);
+				stats.frontier(heap.size() + 1);
+			}
+			if (node == end) {
+				return states.path(state);
+			}
+			if (stats != null && stats.halted(node)) {
+				return partialPath(states, stats.closest());
+			}
+			int rooms = roomsOf(key) + 1;
+			int degree = graph.degree(node);
+			if (stats != null) {
+				stats.considered(degree, unaffordable(graph, node, remaining));
+			}
+			for (int i = 0; i < degree; i++) {
+				int next = graph.neighbour(node, i);
+				int left = remaining - graph.edgeType(node, i);
+				if (sink != null) {
+					sink.edgeConsidered(node, next, left);
+				}
+				if (left <= seen.get(CLOSED_COINS, next)) {
+					continue;
+				}
+				int queuedRooms = seen.get(QUEUED_ROOMS, next);
+				int queuedCoins = seen.get(QUEUED_COINS, next);
+				if (queuedRooms <= rooms && queuedCoins >= left) {
+					// an equally short or shorter state with as many coins is already queued
+					continue;
+				}
+				if (rooms < queuedRooms || (rooms == queuedRooms && left > queuedCoins)) {
+					seen.set(QUEUED_ROOMS, next, rooms);
+					seen.set(QUEUED_COINS, next, left);
+				}
+				heap.push(rank(rooms, estimate(next, end, width)), states.add(next, left, state));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * returns the Manhattan distance between two rooms, or 0 if the graph is not a grid
+	 */
+	private static int estimate(int node, int end, int width) {
+		if (width <= 0) {
+			return 0;
+		}
+		return Math.abs(node / width - end / width) + Math.abs(node % width - end % width);
+	}
+
+	/**
+	 * Pack the A* priority of a state: by rooms plus estimate, then by most rooms so far
+	 */
+	private static long rank(int rooms, int estimate) {
+		return ((long) (rooms + estimate) << 32) | (0xffffffffL - rooms);
+	}
+
+	/**
+	 * returns the rooms so far packed into an A* priority
+	 */
+	private static int roomsOf(long rank) {
+		return (int) (0xffffffffL - (rank & 0xffffffffL));
+	}
+
+	/**
+	 * returns the route on a depth first stack up to the room on it nearest the end of a budgeted search
+	 */
+	private static int[] stackPath(int[] stack, int top, SolveStats stats) {
+		int nearest = 0;
+		for (int i = 1; i <= top; i++) {
+			if (stats.distance(stack[i * FRAME + NODE]) < stats.distance(stack[nearest * FRAME + NODE])) {
+				nearest = i;
+			}
+		}
+		int[] path = new int[nearest + 1];
+		for (int i = 0; i <= nearest; i++) {
+			path[i] = stack[i * FRAME + NODE];
+		}
+		return path;
+	}
+
+	/**
+	 * returns the route to the first state reached at a node, or null if no state is
+	 */
+	static int[] partialPath(SearchStates states, int node) {
+		for (int state = 0; state < states.size(); state++) {
+			if (states.node(state) == node) {
+				return states.path(state);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Follow parent links kept in a scratch table back to the node whose parent is -1
+	 * @return the nodes from the first node to the given one
+	 */
+	static int[] tracePath(SearchScratch scratch, int table, int node) {
+		int length = 0;
+		for (int v = node; v >= 0; v = scratch.get(table, v)) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int v = node; v >= 0; v = scratch.get(table, v)) {
+			path[--length] = v;
+		}
+		return path;
+	}
+}
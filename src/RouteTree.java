@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * The cheapest route from every node of a graph to one node, its root. The
+ * routes are ranked like PathSearch.fewestCoins, by coins spent and then by
+ * rooms crossed, so together they form a tree: the cheapest route from a node
+ * leaves it for its parent, whose own cheapest route carries on to the root.
+ * Edges cost the same both ways, so one run of Dijkstra's algorithm out from
+ * the root finds every route at once.
+ *
+ * After that a route is read by following parents, in time proportional to
+ * its length. The tree is never changed once built, so any number of threads
+ * can read routes from it at the same time, but it does not see later changes
+ * to the graph.
+ */
+public final class RouteTree {
+
+	// batches smaller than this are answered on the calling thread
+	private static final int SEQUENTIAL_BATCH = 256;
+
+	private final int root;
+	// the next node on the cheapest route from each node, -1 for the root and unreachable nodes
+	private final int[] parents;
+	// the coins the route spends, Integer.MAX_VALUE if there is none
+	private final int[] spent;
+	// the number of edges on the route
+	private final int[] lengths;
+
+	private RouteTree(int root, int[] parents, int[] spent, int[] lengths) {
+		this.root = root;
+		this.parents = parents;
+		this.spent = spent;
+		this.lengths = lengths;
+	}
+
+	/**
+	 * Find the cheapest route from every node of a graph to a root
+	 * @param graph the graph
+	 * @param root the node every route ends at
+	 * @return the tree of routes
+	 */
+	public static RouteTree build(IndexedGraph graph, int root) {
+		int nodes = graph.numNodes();
+		int[] parents = new int[nodes];
+		int[] spent = new int[nodes];
+		int[] lengths = new int[nodes];
+		Arrays.fill(parents, -1);
+		Arrays.fill(spent, Integer.MAX_VALUE);
+		spent[root] = 0;
+		IntMinHeap heap = new IntMinHeap(16);
+		heap.push(0, root);
+
+		while (!heap.isEmpty()) {
+			long key = heap.minKey();
+			int node = heap.pop();
+			if (key != distance(spent, lengths, node)) {
+				// a cheaper entry for this node was already expanded
+				continue;
+			}
+			int degree = graph.degree(node);
+			for (int i = 0; i < degree; i++) {
+				int next = graph.neighbour(node, i);
+				long candidate = key + ((long) graph.edgeType(node, i) << 32) + 1;
+				if (candidate < distance(spent, lengths, next)) {
+					spent[next] = (int) (candidate >>> 32);
+					lengths[next] = (int) candidate;
+					parents[next] = node;
+					heap.push(candidate, next);
+				}
+			}
+		}
+		return new RouteTree(root, parents, spent, lengths);
+	}
+
+	/**
+	 * returns (coins spent << 32) | edges for the best known route of a node, Long.MAX_VALUE if none
+	 */
+	private static long distance(int[] spent, int[] lengths, int node) {
+		return spent[node] == Integer.MAX_VALUE ? Long.MAX_VALUE : ((long) spent[node] << 32) | lengths[node];
+	}
+
+	/**
+	 * returns the node every route ends at
+	 * @return the root
+	 */
+	public int getRoot() {
+		return root;
+	}
+
+	/**
+	 * returns the coins the cheapest route from a node spends
+	 * @param node the node
+	 * @return the coins, or Integer.MAX_VALUE if the node cannot reach the root
+	 */
+	public int spent(int node) {
+		return spent[node];
+	}
+
+	/**
+	 * The cheapest route from a node to the root
+	 * @param node the first node
+	 * @param coins the coins available
+	 * @return the nodes on the route, from the node to the root, or null if no route the coins can pay for exists
+	 */
+	public int[] path(int node, int coins) {
+		if (spent[node] > coins) {
+			return null;
+		}
+		int[] path = new int[lengths[node] + 1];
+		for (int i = 0; i < path.length; i++) {
+			path[i] = node;
+			node = parents[node];
+		}
+		return path;
+	}
+
+	/**
+	 * The cheapest routes from many nodes to the root, found on a pool when there are many of them
+	 * @param nodes the first nodes
+	 * @param coins the coins available
+	 * @param pool the pool to answer large batches on
+	 * @return the route from each node, as path would give it, in the order of the nodes
+	 */
+	public int[][] paths(int[] nodes, int coins, ForkJoinPool pool) {
+		int[][] paths = new int[nodes.length][];
+		if (nodes.length < SEQUENTIAL_BATCH || pool.getParallelism() == 1) {
+			fill(paths, nodes, coins, 0, nodes.length);
+			return paths;
+		}
+		int chunk = Math.max(SEQUENTIAL_BATCH, nodes.length / (pool.getParallelism() * 4));
+		List<Callable<Void>> tasks = new ArrayList<>();
+		for (int from = 0; from < nodes.length; from += chunk) {
+			int first = from;
+			int last = Math.min(nodes.length, from + chunk);
+			tasks.add(() -> {
+				fill(paths, nodes, coins, first, last);
+				return null;
+			});
+		}
+		try {
+			for (Future<Void> part : pool.invokeAll(tasks)) {
+				part.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Route queries interrupted");
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Route queries failed", e.getCause());
+		}
+		return paths;
+	}
+
+	/**
+	 * Find the routes from the nodes first .. last-1
+	 */
+	private void fill(int[][] paths, int[] nodes, int coins, int first, int last) {
+		for (int i = first; i < last; i++) {
+			paths[i] = path(nodes[i], coins);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-node working tables for one search, so searches keep their state out
+ * of the graph and any number of them can run over the same graph at once.
+ *
+ * A scratch holds a few int tables with one entry per node and a stamp per
+ * node. An entry is only valid if its node carries the current epoch; other
+ * nodes read as the table's default. Starting a new search bumps the epoch,
+ * so the tables never have to be cleared. Scratches are pooled: acquire one
+ * for a search and release it when the search is done.
+ *
+ * The tables only grow, so the pool is capped by the bytes it holds as well
+ * as by the number of scratches, and a scratch much larger than the search
+ * it was last used for is dropped on release instead of being kept. After a
+ * burst of searches over a huge graph, the pool then holds at most an eighth
+ * of the heap, and lets go of the large scratches as smaller searches reuse them.
+ */
+public final class SearchScratch {
+
+	// idle scratches kept for reuse, and the bytes their tables hold
+	private static final int POOL_LIMIT = 64;
+	private static final long POOL_BYTES = Runtime.getRuntime().maxMemory() / 8;
+	private static final ConcurrentLinkedQueue<SearchScratch> POOL = new ConcurrentLinkedQueue<>();
+	private static final AtomicLong pooledBytes = new AtomicLong();
+	// a scratch is kept if it has at most this many nodes, or at most OVERSIZE times the nodes of its last search
+	private static final int SMALL_NODES = 1 << 16;
+	private static final int OVERSIZE = 4;
+
+	private int epoch;
+	private int[] stamps = new int[0];
+	private int[][] tables = new int[0][];
+	private int[] defaults;
+	// the nodes of the search the scratch was last acquired for
+	private int nodes;
+
+	private SearchScratch() {
+	}
+
+	/**
+	 * Take a scratch from the pool, or make one, and start a new search with it
+	 * @param nodes the number of nodes in the graph
+	 * @param defaults the value every entry of each table starts with; one table per value
+	 * @return the scratch
+	 */
+	public static SearchScratch acquire(int nodes, int... defaults) {
+		SearchScratch scratch = POOL.poll();
+		if (scratch == null) {
+			scratch = new SearchScratch();
+		} else {
+			pooledBytes.addAndGet(-scratch.bytes());
+		}
+		scratch.begin(nodes, defaults);
+		return scratch;
+	}
+
+	/**
+	 * Return this scratch to the pool. It must not be used afterwards.
+	 */
+	public void release() {
+		if (stamps.length > SMALL_NODES && stamps.length / OVERSIZE > nodes) {
+			return;
+		}
+		long bytes = bytes();
+		if (pooledBytes.addAndGet(bytes) > POOL_BYTES || POOL.size() >= POOL_LIMIT) {
+			pooledBytes.addAndGet(-bytes);
+			return;
+		}
+		POOL.offer(this);
+	}
+
+	/**
+	 * returns the bytes held by the idle scratches in the pool
+	 */
+	static long pooledBytes() {
+		return pooledBytes.get();
+	}
+
+	/**
+	 * returns the bytes held by this scratch's tables
+	 */
+	private long bytes() {
+		return 4L * stamps.length * (1 + tables.length);
+	}
+
+	/**
+	 * Read an entry
+	 * @param table the table, in the order the defaults were given
+	 * @param node the node
+	 * @return the entry, or the table's default if it was not set in this search
+	 */
+	public int get(int table, int node) {
+		return stamps[node] == epoch ? tables[table][node] : defaults[table];
+	}
+
+	/**
+	 * Write an entry
+	 * @param table the table, in the order the defaults were given
+	 * @param node the node
+	 * @param value the new value
+	 */
+	public void set(int table, int node, int value) {
+		if (stamps[node] != epoch) {
+			// first write to this node in this search: the other tables start at their defaults
+			stamps[node] = epoch;
+			for (int t = 0; t < defaults.length; t++) {
+				tables[t][node] = defaults[t];
+			}
+		}
+		tables[table][node] = value;
+	}
+
+	/**
+	 * Start a new search: size the tables and move to a fresh epoch
+	 */
+	private void begin(int nodes, int[] defaults) {
+		this.nodes = nodes;
+		if (stamps.length < nodes) {
+			stamps = new int[nodes];
+			epoch = 0;
+			for (int t = 0; t < tables.length; t++) {
+				tables[t] = new int[nodes];
+			}
+		}
+		if (tables.length < defaults.length) {
+			int old = tables.length;
+			tables = Arrays.copyOf(tables, defaults.length);
+			for (int t = old; t < tables.length; t++) {
+				tables[t] = new int[stamps.length];
+			}
+		}
+		this.defaults = defaults.clone();
+		epoch++;
+		if (epoch == 0) {
+			// the epoch wrapped; stamps from 2^32 searches ago would look current
+			Arrays.fill(stamps, 0);
+			epoch = 1;
+		}
+	}
+}
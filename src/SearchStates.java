@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+/**
+ * The states reached by a search, each a node, the coins left on arrival and
+ * the state it was reached from, kept in parallel int arrays and numbered in
+ * the order they were added. A breadth first search can use the numbering as
+ * its queue.
+ */
+public class SearchStates {
+
+	private int[] nodes;
+	private int[] coins;
+	private int[] parents;
+	private int size;
+
+	/**
+	 * Constructor for the states
+	 * @param capacity the number of states to hold before growing
+	 */
+	public SearchStates(int capacity) {
+		capacity = Math.max(capacity, 16);
+		nodes = new int[capacity];
+		coins = new int[capacity];
+		parents = new int[capacity];
+	}
+
+	/**
+	 * Add a state
+	 * @param node the node
+	 * @param remainingCoins the coins left on arrival
+	 * @param parent the state it was reached from, or -1 for the first state
+	 * @return the number of the new state
+	 */
+	public int add(int node, int remainingCoins, int parent) {
+		if (size == nodes.length) {
+			int capacity = size + (size >>> 1);
+			nodes = Arrays.copyOf(nodes, capacity);
+			coins = Arrays.copyOf(coins, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+		}
+		nodes[size] = node;
+		coins[size] = remainingCoins;
+		parents[size] = parent;
+		return size++;
+	}
+
+	public int node(int state) {
+		return nodes[state];
+	}
+
+	public int coins(int state) {
+		return coins[state];
+	}
+
+	public int parent(int state) {
+		return parents[state];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Follow parents back to the first state
+	 * @param state the last state
+	 * @return the nodes from the first state to the given one
+	 */
+	public int[] path(int state) {
+		int length = 0;
+		for (int s = state; s >= 0; s = parents[s]) {
+			length++;
+		}
+		int[] path = new int[length];
+		for (int s = state; s >= 0; s = parents[s]) {
+			path[--length] = nodes[s];
+		}
+		return path;
+	}
+}
@@ -4,7 +4,6 @@ import java.io.*;
 public class Solve {
 
 	public static void main(String[] args) {
-		GraphNode u, v;
 		DrawMaze display;
 		int delay = 0;
 		BufferedReader in;
@@ -15,29 +14,40 @@ public class Solve {
 		else {
 			if (args.length == 2)
 				delay = Integer.parseInt(args[1]);
-			display = new DrawMaze(args[0]);
+			// read the file once, for both the drawing and the solver
+			MazeFile file;
+			try {
+				file = MazeFile.read(args[0]);
+			} catch (IOException | GraphException e) {
+				System.out.println("Error reading maze file");
+				return;
+			}
+			display = new DrawMaze(file);
 
 			try {
 				in = new BufferedReader(new InputStreamReader(System.in));
 
-				Maze theMaze = new Maze(args[0]);
+				Maze theMaze = new Maze(file);
 
 				System.out.println("Press RET to continue");
 				line = in.readLine();
 
-				Iterator solution = theMaze.solve();
+				// the search is shown as it runs, then the solution is drawn at the given speed
+				PathAnimator animator = new PathAnimator(display, PathAnimator.DEFAULT_FPS, delay);
+				animator.start();
+				Iterator<GraphNode> solution;
+				Trace.setSink(animator.frontier());
+				try {
+					solution = theMaze.solve();
+				} finally {
+					Trace.setSink(null);
+				}
 
 				if (solution != null) {
-					if (solution.hasNext())
-						u = (GraphNode) solution.next();
-					else
+					if (!solution.hasNext())
 						return;
-					while (solution.hasNext()) {
-						v = (GraphNode) solution.next();
-						Thread.sleep(delay);
-						display.drawEdge(u, v);
-						u = v;
-					}
+					animator.addPath(solution);
+					animator.finish();
 				} else {
 					System.out.println("No solution was found");
 					System.out.println("");
@@ -0,0 +1,85 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits on one solve started with Maze.solveAsync: a deadline measured
+ * from the start of the search, a cap on the states it expands, and a flag
+ * that stops it. A budgeted search checks them every few thousand expanded
+ * rooms, when it also reports its progress, and the parallel and
+ * bidirectional searches at the end of a level. A budget belongs to a single
+ * solve.
+ */
+public class SolveBudget {
+
+	/**
+	 * The reasons a budgeted search stops early
+	 */
+	public enum Limit {
+		// the solve was cancelled
+		CANCELLED,
+		// the deadline passed
+		DEADLINE,
+		// the search expanded as many states as it was allowed
+		STATES
+	}
+
+	private final long timeoutNanos;
+	private final long maxStates;
+	private final SolveProgress progress;
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor for the budget
+	 * @param timeout how long the search may run, 0 for no deadline
+	 * @param unit the unit of the timeout
+	 * @param maxStates the most states the search may expand, 0 for no cap
+	 * @param progress told of the progress of the search, or null
+	 */
+	public SolveBudget(long timeout, TimeUnit unit, long maxStates, SolveProgress progress) {
+		if (timeout < 0 || maxStates < 0) {
+			throw new IllegalArgumentException("Invalid solve budget");
+		}
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.maxStates = maxStates;
+		this.progress = progress;
+	}
+
+	/**
+	 * Stop the search at its next check. Cancelling the future returned by
+	 * Maze.solveAsync does this too.
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * returns whether the solve was cancelled
+	 * @return true if cancel was called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * returns how long the search may run
+	 * @return the timeout in nanoseconds, 0 for no deadline
+	 */
+	public long getTimeoutNanos() {
+		return timeoutNanos;
+	}
+
+	/**
+	 * returns the most states the search may expand
+	 * @return the cap, 0 for none
+	 */
+	public long getMaxStates() {
+		return maxStates;
+	}
+
+	/**
+	 * returns the progress callback
+	 * @return the callback, or null
+	 */
+	public SolveProgress getProgress() {
+		return progress;
+	}
+}
@@ -0,0 +1,62 @@
+import java.util.Iterator;
+
+/**
+ * Thrown through the future of Maze.solveAsync when the search ran out of
+ * time or states before it finished. It carries the best route found so far:
+ * the route to the room nearest the exit that the search had reached.
+ */
+public class SolveLimitException extends Exception {
+
+	private final SolveBudget.Limit limit;
+	private final long states;
+	private final int distance;
+	private final transient Iterator<GraphNode> partialPath;
+
+	/**
+	 * Constructor for the exception
+	 * @param limit the limit the search reached
+	 * @param states the states the search expanded
+	 * @param distance how far the nearest room reached is from the exit, counting rows and columns
+	 * @param partialPath the route from the start to that room, or null if there is none
+	 */
+	public SolveLimitException(SolveBudget.Limit limit, long states, int distance, Iterator<GraphNode> partialPath) {
+		super("Solve stopped by its " + limit.name().toLowerCase() + " limit after " + states
+				+ " states, " + distance + " rooms from the exit");
+		this.limit = limit;
+		this.states = states;
+		this.distance = distance;
+		this.partialPath = partialPath;
+	}
+
+	/**
+	 * returns the limit the search reached
+	 * @return the limit
+	 */
+	public SolveBudget.Limit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * returns the states the search expanded
+	 * @return the states
+	 */
+	public long getStates() {
+		return states;
+	}
+
+	/**
+	 * returns how far the nearest room reached is from the exit
+	 * @return the distance, counting rows and columns
+	 */
+	public int getDistance() {
+		return distance;
+	}
+
+	/**
+	 * returns the best route found
+	 * @return the route from the start to the room nearest the exit, or null if there is none
+	 */
+	public Iterator<GraphNode> getPartialPath() {
+		return partialPath;
+	}
+}
@@ -0,0 +1,12 @@
+/**
+ * Receives the progress of a budgeted solve, see SolveBudget. It is called
+ * on the thread running the search, every few thousand expanded rooms, so it
+ * should return quickly.
+ */
+public interface SolveProgress {
+
+  /* The search has expanded the given number of states so far, and the room
+     nearest the exit it has reached is distance rooms from it, counting rows
+     and columns. */
+  public void progress(long states, int distance);
+}
@@ -0,0 +1,262 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timings for one solve, filled in by Maze.solve(Strategy, SolveStats).
+ *
+ * Only the thread running the search writes the counters, with lazySet, so
+ * counting costs no more than a plain store; any other thread, such as a JMX
+ * client polling the MBean, can read them while the search runs.
+ *
+ * The stats also enforce a SolveBudget, since they already see every room a
+ * search expands: a budgeted search asks halted after each expansion and
+ * stops with the best route it has if the answer is yes.
+ */
+public class SolveStats implements SolveStatsMBean {
+
+	// how many expanded rooms pass between checks of the budget
+	private static final int CHECK_INTERVAL = 4096;
+
+	private final AtomicLong nodesVisited = new AtomicLong();
+	private final AtomicLong edgesConsidered = new AtomicLong();
+	private final AtomicLong edgesUnaffordable = new AtomicLong();
+	private final AtomicLong backtracks = new AtomicLong();
+	private final AtomicLong maxDepth = new AtomicLong();
+	private final AtomicLong peakFrontier = new AtomicLong();
+	private volatile long parseNanos;
+	private volatile long buildNanos;
+	// when the running search started, and how long the last one took
+	private volatile long searchStart;
+	private volatile long searchNanos;
+	private volatile boolean running;
+
+	// the budget of the running search, or null, and the room it is heading for
+	private SolveBudget budget;
+	private int end;
+	private int width;
+	// expansions left until the next check
+	private long countdown;
+	// the expanded room nearest the end, -1 if none yet, and its distance from the end
+	private int closest;
+	private int closestDistance;
+	// why the search stopped early, or null
+	private SolveBudget.Limit stopped;
+
+	/**
+	 * Register these stats with the platform MBean server
+	 * @param name the name part of the object name maze:type=SolveStats,name=...
+	 * @return the object name the stats were registered under
+	 * @throws JMException if the name is invalid or already taken
+	 */
+	public ObjectName register(String name) throws JMException {
+		ObjectName objectName = new ObjectName("maze:type=SolveStats,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		return objectName;
+	}
+
+	@Override
+	public long getNodesVisited() {
+		return nodesVisited.get();
+	}
+
+	@Override
+	public long getEdgesConsidered() {
+		return edgesConsidered.get();
+	}
+
+	@Override
+	public long getEdgesUnaffordable() {
+		return edgesUnaffordable.get();
+	}
+
+	@Override
+	public long getBacktracks() {
+		return backtracks.get();
+	}
+
+	@Override
+	public long getMaxDepth() {
+		return maxDepth.get();
+	}
+
+	@Override
+	public long getPeakFrontier() {
+		return peakFrontier.get();
+	}
+
+	@Override
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	@Override
+	public long getBuildNanos() {
+		return buildNanos;
+	}
+
+	@Override
+	public long getSearchNanos() {
+		return running ? System.nanoTime() - searchStart : searchNanos;
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public String toString() {
+		return "nodes visited " + getNodesVisited() + ", edges considered " + getEdgesConsidered()
+				+ ", edges unaffordable " + getEdgesUnaffordable() + ", backtracks " + getBacktracks()
+				+ ", max depth " + getMaxDepth() + ", peak frontier " + getPeakFrontier()
+				+ ", parse " + getParseNanos() + "ns, build " + getBuildNanos() + "ns, search " + getSearchNanos() + "ns";
+	}
+
+	/**
+	 * Clear the counters and start timing a search
+	 * @param parse the nanoseconds the maze took to read
+	 * @param build the nanoseconds the maze took to finish building
+	 */
+	void start(long parse, long build) {
+		nodesVisited.set(0);
+		edgesConsidered.set(0);
+		edgesUnaffordable.set(0);
+		backtracks.set(0);
+		maxDepth.set(0);
+		peakFrontier.set(0);
+		parseNanos = parse;
+		buildNanos = build;
+		searchStart = System.nanoTime();
+		running = true;
+		budget = null;
+		closest = -1;
+		closestDistance = Integer.MAX_VALUE;
+		stopped = null;
+	}
+
+	/**
+	 * Hold the search that was just started to a budget
+	 * @param searchBudget the budget
+	 * @param endRoom the room the search is heading for
+	 * @param rooms the number of rooms in a row, to measure how far a room is from the end
+	 */
+	void limit(SolveBudget searchBudget, int endRoom, int rooms) {
+		budget = searchBudget;
+		end = endRoom;
+		width = rooms;
+		countdown = interval(0);
+	}
+
+	/**
+	 * Note that a budgeted search expanded a room, and check its budget every so often
+	 * @param node the room
+	 * @return true if the search must stop
+	 */
+	boolean halted(int node) {
+		if (budget == null) {
+			return false;
+		}
+		int distance = distance(node);
+		if (distance < closestDistance) {
+			closestDistance = distance;
+			closest = node;
+		}
+		if (--countdown > 0) {
+			return false;
+		}
+		long states = nodesVisited.get();
+		if (budget.isCancelled()) {
+			stopped = SolveBudget.Limit.CANCELLED;
+		} else if (budget.getMaxStates() > 0 && states >= budget.getMaxStates()) {
+			stopped = SolveBudget.Limit.STATES;
+		} else if (budget.getTimeoutNanos() > 0 && System.nanoTime() - searchStart >= budget.getTimeoutNanos()) {
+			stopped = SolveBudget.Limit.DEADLINE;
+		}
+		if (stopped != null) {
+			return true;
+		}
+		countdown = interval(states);
+		if (budget.getProgress() != null) {
+			budget.getProgress().progress(states, closestDistance);
+		}
+		return false;
+	}
+
+	/**
+	 * returns the expansions until the next check, so the state cap is checked when it is reached
+	 */
+	private long interval(long states) {
+		long left = budget.getMaxStates() - states;
+		return budget.getMaxStates() > 0 && left < CHECK_INTERVAL ? Math.max(1, left) : CHECK_INTERVAL;
+	}
+
+	/**
+	 * returns how far a room is from the end of the budgeted search, counting rows and columns
+	 */
+	int distance(int node) {
+		return Math.abs(node / width - end / width) + Math.abs(node % width - end % width);
+	}
+
+	/**
+	 * returns the expanded room nearest the end of the budgeted search, -1 if none
+	 */
+	int closest() {
+		return closest;
+	}
+
+	/**
+	 * returns how far the nearest expanded room is from the end
+	 */
+	int closestDistance() {
+		return closestDistance;
+	}
+
+	/**
+	 * returns why the search stopped early, or null if it did not
+	 */
+	SolveBudget.Limit stopped() {
+		return stopped;
+	}
+
+	/**
+	 * Stop timing the search
+	 */
+	void finish() {
+		searchNanos = System.nanoTime() - searchStart;
+		running = false;
+	}
+
+	void visited(long count) {
+		nodesVisited.lazySet(nodesVisited.get() + count);
+	}
+
+	/**
+	 * Count edges looked at
+	 * @param count the edges
+	 * @param unaffordable how many of them the coins could not pay for
+	 */
+	void considered(long count, long unaffordable) {
+		edgesConsidered.lazySet(edgesConsidered.get() + count);
+		if (unaffordable != 0) {
+			edgesUnaffordable.lazySet(edgesUnaffordable.get() + unaffordable);
+		}
+	}
+
+	void backtracked() {
+		backtracks.lazySet(backtracks.get() + 1);
+	}
+
+	void depth(long depth) {
+		if (depth > maxDepth.get()) {
+			maxDepth.lazySet(depth);
+		}
+	}
+
+	void frontier(long size) {
+		if (size > peakFrontier.get()) {
+			peakFrontier.lazySet(size);
+		}
+	}
+}
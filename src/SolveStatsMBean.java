@@ -0,0 +1,35 @@
+/**
+ * The JMX view of a SolveStats, see SolveStats.register.
+ */
+public interface SolveStatsMBean {
+
+  /* Returns the number of nodes the search has entered or expanded. */
+  public long getNodesVisited();
+
+  /* Returns the number of edges the search has looked at. */
+  public long getEdgesConsidered();
+
+  /* Returns the number of edges skipped because the coins left could not pay for them. */
+  public long getEdgesUnaffordable();
+
+  /* Returns the number of times a depth first search backed up. */
+  public long getBacktracks();
+
+  /* Returns the deepest the depth first stack has been. */
+  public long getMaxDepth();
+
+  /* Returns the most states that have been waiting to be expanded at once. */
+  public long getPeakFrontier();
+
+  /* Returns the nanoseconds spent reading the maze file, including adding its edges to the graph. */
+  public long getParseNanos();
+
+  /* Returns the nanoseconds spent finishing the graph after the file was read. */
+  public long getBuildNanos();
+
+  /* Returns the nanoseconds spent searching, so far if the search is still running. */
+  public long getSearchNanos();
+
+  /* Returns true while a search is running. */
+  public boolean isRunning();
+}
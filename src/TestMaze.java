@@ -0,0 +1,1128 @@
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+
+/* Program for testing the maze solvers. Run it from the directory holding the
+   sample mazes, or give that directory as the first argument. It throws once
+   every test has run if any of them failed, so a build running it stops. */
+public class TestMaze {
+
+	// the sample mazes, with the rooms on the route a depth first search takes,
+	// the fewest rooms on any route and the fewest coins any route spends
+	private static final String[] MAZES = {"maze0.txt", "maze1.txt", "maze3.txt", "maze4.txt", "maze7.txt", "maze8.txt"};
+	private static final int[] DEPTH_FIRST_ROOMS = {5, 8, 8, 8, 125, 378};
+	private static final int[] FEWEST_ROOMS = {5, 8, 8, 6, 33, 74};
+	private static final int[] FEWEST_COINS = {4, 0, 1, 5, 0, 1};
+
+	private static int tests;
+	private static int failures;
+	// what went wrong in the current test
+	private static final List<String> problems = new ArrayList<>();
+	private static Path scratch;
+
+	public static void main(String[] args) throws Exception {
+		String directory = args.length > 0 ? args[0] : ".";
+
+		System.out.println("");
+		System.out.println("======================================================");
+		System.out.println("TestMaze");
+		System.out.println("======================================================");
+		System.out.println("");
+
+		scratch = Files.createTempDirectory("testmaze");
+		try {
+			testStrategies(directory);
+			testUnsolvable();
+			testRemoveLoops();
+			testScratchPool();
+			testParallelParse(directory);
+			testBinaryFiles(directory);
+			testGridBounds();
+			testGenerator();
+			testCorridors(directory);
+			testGraphAccess(directory);
+			testCompactFromGrid(directory);
+			testTrace(directory);
+			testSolveStats(directory);
+			testSolveAsync(directory);
+			testRoutesToExit(directory);
+			testTiles(directory);
+			testAnimator();
+		} finally {
+			deleteScratch();
+		}
+
+		if (failures > 0) {
+			throw new IllegalStateException(failures + " of " + tests + " tests failed");
+		}
+	}
+
+	/* Every strategy finds a valid route through every sample maze in every
+	   representation; the optimal ones find the best route, and the depth first
+	   ones the route they have always found. */
+	private static void testStrategies(String directory) throws Exception {
+		for (int m = 0; m < MAZES.length; m++) {
+			String file = directory + "/" + MAZES[m];
+			MazeFile maze = MazeFile.read(file);
+			for (Maze.Representation representation : Maze.Representation.values()) {
+				for (Maze.Strategy strategy : Maze.Strategy.values()) {
+					String what = MAZES[m] + " " + representation + " " + strategy;
+					int[] path = rooms(new Maze(file, representation).solve(strategy));
+					if (!checkPath(maze, path, what)) {
+						continue;
+					}
+					switch (strategy) {
+						case DEPTH_FIRST:
+						case BACKTRACKING:
+							expect(path.length == DEPTH_FIRST_ROOMS[m], what + ": " + path.length + " rooms, expected "
+									+ DEPTH_FIRST_ROOMS[m]);
+							break;
+						case FEWEST_COINS:
+							expect(coins(maze, path) == FEWEST_COINS[m], what + ": " + coins(maze, path)
+									+ " coins, expected " + FEWEST_COINS[m]);
+							break;
+						default:
+							expect(path.length == FEWEST_ROOMS[m], what + ": " + path.length + " rooms, expected "
+									+ FEWEST_ROOMS[m]);
+					}
+				}
+			}
+			report();
+		}
+	}
+
+	/* No strategy finds a route where the exit is walled off, or only behind a
+	   door that costs more coins than the maze gives. */
+	private static void testUnsolvable() throws Exception {
+		String walled = write("walled.txt", "10", "3", "2", "0", "scoco", "cwcww", "owowx");
+		String locked = write("locked.txt", "10", "3", "1", "2", "sco3x");
+		for (String file : new String[] {walled, locked}) {
+			for (Maze.Representation representation : Maze.Representation.values()) {
+				for (Maze.Strategy strategy : Maze.Strategy.values()) {
+					Iterator<GraphNode> path = new Maze(file, representation).solve(strategy);
+					expect(path == null, Path.of(file).getFileName() + " " + representation + " " + strategy
+							+ ": found a route");
+				}
+			}
+			report();
+		}
+	}
+
+	/* A route stitched from two halves loses the loops where they cross. */
+	private static void testRemoveLoops() {
+		int[] simple = {0, 1, 2, 3};
+		expect(BidirectionalSearch.removeLoops(simple, 8) == simple, "a route without loops was copied");
+		int[] looped = BidirectionalSearch.removeLoops(new int[] {0, 1, 2, 5, 1, 3, 6, 3, 7}, 8);
+		expect(Arrays.equals(looped, new int[] {0, 1, 3, 7}), "loops left in "
+				+ Arrays.toString(looped));
+		report();
+	}
+
+	/* A scratch grown for a large search is kept for the next one, but dropped
+	   once a small search has used it. */
+	private static void testScratchPool() {
+		int large = 1 << 20;
+		SearchScratch scratch = SearchScratch.acquire(large, 0, 0);
+		scratch.release();
+		expect(SearchScratch.pooledBytes() >= 12L * large, "a large scratch was not pooled");
+		// take every idle scratch for small searches, then give them all back
+		List<SearchScratch> taken = new ArrayList<>();
+		while (SearchScratch.pooledBytes() > 0) {
+			taken.add(SearchScratch.acquire(16, 0));
+		}
+		for (SearchScratch small : taken) {
+			small.release();
+		}
+		expect(SearchScratch.pooledBytes() < 4L * large, "a large scratch used for a small search was pooled: "
+				+ SearchScratch.pooledBytes() + " bytes");
+		report();
+	}
+
+	/* Parsing a maze in bands on a pool hands the handler exactly what parsing
+	   it in one pass does, however the bands fall on the lines. */
+	private static void testParallelParse(String directory) throws Exception {
+		List<String> files = new ArrayList<>();
+		for (String maze : MAZES) {
+			files.add(directory + "/" + maze);
+		}
+		// line breaks of two bytes, and a last line without one
+		String maze4 = new String(Files.readAllBytes(Path.of(directory, "maze4.txt")));
+		Path crlf = scratch.resolve("crlf.txt");
+		Files.write(crlf, maze4.trim().replace("\n", "\r\n").getBytes());
+		files.add(crlf.toString());
+		String large = scratch.resolve("large.txt").toString();
+		new MazeGenerator(MazeGenerator.Kind.DOORS, 700, 700, 20, 1).write(large);
+		files.add(large);
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (String file : files) {
+				Recorder serial = new Recorder();
+				MazeParser.parse(file, serial);
+				for (long band : new long[] {1, 7, 64, 4096, 1 << 20}) {
+					Recorder parallel = new Recorder();
+					MazeParser.parse(file, parallel, pool, band);
+					expect(serial.matches(parallel), Path.of(file).getFileName() + ": bands of " + band
+							+ " bytes differ from one pass");
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		report();
+	}
+
+	/* Keeps everything a parser hands it. Bands hand over their rooms before
+	   their links, so the rooms and links are compared in sorted order. */
+	private static final class Recorder implements MazeParser.Handler {
+		private int[] header;
+		private long[] rooms = new long[16];
+		private int roomCount;
+		private long[] links = new long[16];
+		private int linkCount;
+
+		@Override
+		public void header(int scale, int width, int length, int coins) {
+			header = new int[] {scale, width, length, coins};
+		}
+
+		@Override
+		public void room(char kind, int row, int col) {
+			if (roomCount == rooms.length) {
+				rooms = Arrays.copyOf(rooms, roomCount * 2);
+			}
+			rooms[roomCount++] = ((long) row << 40) | ((long) col << 8) | kind;
+		}
+
+		@Override
+		public void link(char code, int node, int neighbour) {
+			if (linkCount == links.length) {
+				links = Arrays.copyOf(links, linkCount * 2);
+			}
+			links[linkCount++] = ((long) node << 40) | ((long) (neighbour - node) << 8) | code;
+		}
+
+		boolean matches(Recorder other) {
+			Arrays.sort(rooms, 0, roomCount);
+			Arrays.sort(links, 0, linkCount);
+			Arrays.sort(other.rooms, 0, other.roomCount);
+			Arrays.sort(other.links, 0, other.linkCount);
+			return header != null && Arrays.equals(header, other.header)
+					&& Arrays.equals(rooms, 0, roomCount, other.rooms, 0, other.roomCount)
+					&& Arrays.equals(links, 0, linkCount, other.links, 0, other.linkCount);
+		}
+	}
+
+	/* Saving a maze in the binary format and mapping it back gives the same
+	   maze and the same solutions; damaged binary files are refused. */
+	private static void testBinaryFiles(String directory) throws Exception {
+		for (String name : MAZES) {
+			MazeFile text = MazeFile.read(directory + "/" + name);
+			String file = scratch.resolve(name + ".bin").toString();
+			text.save(file);
+			MazeFile binary = MazeFile.map(file);
+			expect(text.getScale() == binary.getScale() && text.getCoins() == binary.getCoins()
+					&& text.getStart() == binary.getStart() && text.getEnd() == binary.getEnd(),
+					name + ": header changed by a round trip");
+			GridGraph before = text.getGraph();
+			GridGraph after = binary.getGraph();
+			boolean same = before.getWidth() == after.getWidth() && before.getLength() == after.getLength();
+			for (int u = 0; same && u < before.numNodes(); u++) {
+				same = before.right(u) == after.right(u) && before.lower(u) == after.lower(u);
+			}
+			expect(same, name + ": rooms changed by a round trip");
+			for (Maze.Strategy strategy : Maze.Strategy.values()) {
+				expect(Arrays.equals(rooms(new Maze(text).solve(strategy)), rooms(new Maze(binary).solve(strategy))),
+						name + " " + strategy + ": solution changed by a round trip");
+			}
+		}
+		report();
+
+		// maze1 is 5 rooms wide and 3 long
+		String saved = scratch.resolve("maze1.txt.bin").toString();
+		byte[] good = Files.readAllBytes(Path.of(saved));
+		int rooms = MazeFile.HEADER_BYTES;
+		expectRefused(good, "not damaged", -1, 0, true);
+		expectRefused(good, "a bad magic number", 0, 'X', false);
+		expectRefused(good, "a scale of 0", 11, 0, false);
+		expectRefused(good, "a start outside the maze", 27, 99, false);
+		expectRefused(good, "a link code above the dearest door", rooms + 1, 0x0c, false);
+		expectRefused(good, "a link right from the last column", rooms + 4, 0x01, false);
+		expectRefused(good, "a link down from the last row", rooms + 10, 0x10, false);
+		expectRefused(Arrays.copyOf(good, good.length - 1), "a missing room", -1, 0, false);
+		report();
+	}
+
+	/* Map a copy of a binary maze with one byte changed, expecting it to load only if valid. */
+	private static void expectRefused(byte[] bytes, String damage, int position, int value, boolean valid)
+			throws IOException {
+		byte[] damaged = bytes.clone();
+		if (position >= 0) {
+			damaged[position] = (byte) value;
+		}
+		Path file = scratch.resolve("damaged.bin");
+		Files.write(file, damaged);
+		boolean loaded;
+		try {
+			MazeFile.map(file.toString());
+			loaded = true;
+		} catch (IOException e) {
+			loaded = false;
+		}
+		expect(loaded == valid, "a binary maze with " + damage + (valid ? " was refused" : " was loaded"));
+	}
+
+	/* A grid never joins a room on the last column to the next row, or a room
+	   on the last row to a room past the end, whatever its bytes say. */
+	private static void testGridBounds() {
+		// 3 rooms wide and 2 long, every link open
+		byte[] cells = new byte[6];
+		Arrays.fill(cells, (byte) 0x11);
+		GridGraph grid = new GridGraph(3, 2, java.nio.ByteBuffer.wrap(cells).asReadOnlyBuffer());
+		int[] degrees = {2, 3, 2, 2, 3, 2};
+		for (int u = 0; u < cells.length; u++) {
+			expect(grid.degree(u) == degrees[u], "room " + u + " has " + grid.degree(u) + " links, expected "
+					+ degrees[u]);
+			for (int i = 0; i < grid.degree(u); i++) {
+				int v = grid.neighbour(u, i);
+				expect(v >= 0 && v < cells.length && link(grid, u, v) != GridGraph.WALL, "room " + u
+						+ " links to room " + v);
+			}
+		}
+		report();
+	}
+
+	/* The generator makes the same maze from the same seed, in both formats,
+	   and each kind of maze has the shape it promises. */
+	private static void testGenerator() throws Exception {
+		for (MazeGenerator.Kind kind : MazeGenerator.Kind.values()) {
+			MazeGenerator generator = new MazeGenerator(kind, 30, 20, 100, 7);
+			expect(Arrays.equals(text(generator), text(new MazeGenerator(kind, 30, 20, 100, 7))), kind
+					+ ": one seed gave two text mazes");
+			expect(Arrays.equals(binary(generator), binary(new MazeGenerator(kind, 30, 20, 100, 7))), kind
+					+ ": one seed gave two binary mazes");
+			expect(!Arrays.equals(text(generator), text(new MazeGenerator(kind, 30, 20, 100, 8))), kind
+					+ ": two seeds gave the same maze");
+
+			String name = kind.toString().toLowerCase();
+			String textFile = scratch.resolve(name + ".txt").toString();
+			String binaryFile = scratch.resolve(name + ".bin").toString();
+			generator.write(textFile);
+			generator.write(binaryFile);
+			MazeFile maze = MazeFile.read(textFile);
+			MazeFile mapped = MazeFile.map(binaryFile);
+			GridGraph grid = maze.getGraph();
+			boolean same = maze.getStart() == mapped.getStart() && maze.getEnd() == mapped.getEnd();
+			int links = 0;
+			boolean doors = false;
+			for (int u = 0; u < grid.numNodes(); u++) {
+				same &= grid.right(u) == mapped.getGraph().right(u) && grid.lower(u) == mapped.getGraph().lower(u);
+				for (int code : new int[] {grid.right(u), grid.lower(u)}) {
+					links += code != GridGraph.WALL ? 1 : 0;
+					doors |= code >= GridGraph.DOOR;
+				}
+			}
+			expect(same, kind + ": the text and binary mazes differ");
+			expect(doors == (kind == MazeGenerator.Kind.DOORS), kind + (doors ? ": has doors" : ": has no doors"));
+
+			int rooms = grid.numNodes();
+			int reached = reachable(grid, maze.getStart());
+			switch (kind) {
+				case PERFECT:
+					expect(reached == rooms && links == rooms - 1, kind + ": not exactly one route between rooms");
+					break;
+				case UNSOLVABLE:
+					expect(grid.degree(maze.getEnd()) == 0, kind + ": the exit is not walled in");
+					expect(reached == rooms - 1, kind + ": " + reached + " rooms reachable, expected " + (rooms - 1));
+					break;
+				default:
+					expect(reached == rooms && links > rooms - 1, kind + ": not a connected maze with loops");
+			}
+			for (Maze.Strategy strategy : Maze.Strategy.values()) {
+				if (strategy == Maze.Strategy.BACKTRACKING && kind != MazeGenerator.Kind.PERFECT) {
+					// a braided maze has far too many routes to try them all
+					continue;
+				}
+				String what = name + " " + strategy;
+				int[] path = rooms(new Maze(maze).solve(strategy));
+				if (kind == MazeGenerator.Kind.UNSOLVABLE) {
+					expect(path == null, what + ": found a route");
+				} else {
+					checkPath(maze, path, what);
+				}
+			}
+		}
+
+		int[] single = rooms(new Maze(textMaze(new MazeGenerator(MazeGenerator.Kind.PERFECT, 1, 1, 0, 1))).solve());
+		expect(single != null && single.length == 1, "a maze of one room has no route of one room");
+		try {
+			new MazeGenerator(MazeGenerator.Kind.UNSOLVABLE, 1, 1, 0, 1);
+			expect(false, "an unsolvable maze of one room was made");
+		} catch (IllegalArgumentException e) {
+			// its one room would be both the start and the exit
+		}
+		report();
+	}
+
+	private static byte[] text(MazeGenerator generator) throws IOException {
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		generator.writeText(out);
+		return out.toByteArray();
+	}
+
+	private static byte[] binary(MazeGenerator generator) throws IOException {
+		java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+		generator.writeBinary(out);
+		return out.toByteArray();
+	}
+
+	/* Generate a maze into the scratch directory and read it back. */
+	private static MazeFile textMaze(MazeGenerator generator) throws Exception {
+		String file = scratch.resolve("generated.txt").toString();
+		generator.write(file);
+		return MazeFile.read(file);
+	}
+
+	/* The number of rooms reachable from a room. */
+	private static int reachable(IndexedGraph graph, int from) {
+		boolean[] seen = new boolean[graph.numNodes()];
+		int[] queue = new int[graph.numNodes()];
+		int size = 0;
+		seen[from] = true;
+		queue[size++] = from;
+		for (int head = 0; head < size; head++) {
+			int u = queue[head];
+			for (int i = 0; i < graph.degree(u); i++) {
+				int v = graph.neighbour(u, i);
+				if (!seen[v]) {
+					seen[v] = true;
+					queue[size++] = v;
+				}
+			}
+		}
+		return size;
+	}
+
+	/* Searching a maze with its corridors contracted finds valid routes: the
+	   same route for BACKTRACKING and a route as cheap for FEWEST_COINS. */
+	private static void testCorridors(String directory) throws Exception {
+		for (String name : MAZES) {
+			MazeFile maze = MazeFile.read(directory + "/" + name);
+			GridGraph grid = maze.getGraph();
+			CorridorGraph contracted = CorridorGraph.build(grid, maze.getStart(), maze.getEnd());
+			int from = contracted.node(maze.getStart());
+			int to = contracted.node(maze.getEnd());
+			expect(from >= 0 && to >= 0, name + ": the start or the end was contracted away");
+			expect(contracted.numNodes() <= grid.numNodes(), name + ": contracting added nodes");
+			if (from >= 0 && to >= 0) {
+				int coins = maze.getCoins();
+				checkPath(maze, contracted.expand(PathSearch.depthFirst(contracted, from, to, coins)),
+						name + " contracted depth first");
+				checkPath(maze, contracted.expand(PathSearch.memoDepthFirst(contracted, from, to, coins)),
+						name + " contracted memo depth first");
+				checkPath(maze, contracted.expand(PathSearch.fewestRooms(contracted, from, to, coins)),
+						name + " contracted fewest nodes");
+				checkPath(maze, contracted.expand(PathSearch.fewestCoins(contracted, from, to, coins)),
+						name + " contracted fewest coins");
+			}
+			expect(contracted.expand(null) == null, name + ": expanded no route into one");
+			for (Maze.Representation representation : Maze.Representation.values()) {
+				compareContracted(name + " " + representation, maze, representation);
+			}
+		}
+		report();
+
+		// the start and the end in one room
+		MazeFile maze1 = MazeFile.read(directory + "/maze1.txt");
+		for (int room : new int[] {maze1.getStart(), 7, maze1.getEnd()}) {
+			Maze maze = new Maze(new MazeFile(1, 0, room, room, maze1.getGraph()));
+			maze.setContractCorridors(true);
+			for (Maze.Strategy strategy : new Maze.Strategy[] {Maze.Strategy.DEPTH_FIRST, Maze.Strategy.BACKTRACKING,
+					Maze.Strategy.FEWEST_COINS}) {
+				int[] path = rooms(maze.solve(strategy));
+				expect(path != null && path.length == 1 && path[0] == room, "start and end in room " + room + " "
+						+ strategy + ": " + Arrays.toString(path));
+			}
+		}
+		report();
+
+		// two corridors costing 3 and 1 coins between the same two rooms; mazes that are
+		// all corridors and dead ends, with the start in a corridor, and with the exit cut off
+		List<MazeFile> mazes = new ArrayList<>();
+		mazes.add(MazeFile.read(write("parallel.txt", "1", "4", "3", "5", "owo3owo", "wwcwcww", "scowocx", "wwcwcww",
+				"owo1owo")));
+		mazes.add(MazeFile.read(write("line.txt", "1", "6", "1", "0", "scococococx")));
+		mazes.add(MazeFile.read(write("middle.txt", "1", "4", "1", "0", "ocscocx")));
+		mazes.add(MazeFile.read(write("tree.txt", "1", "3", "3", "0", "scoco", "cwwwc", "owoco", "cwwwc", "owocx")));
+		mazes.add(MazeFile.read(write("cut.txt", "1", "3", "2", "0", "scoco", "cwcww", "owowx")));
+		mazes.add(textMaze(new MazeGenerator(MazeGenerator.Kind.PERFECT, 25, 25, 0, 3)));
+		boolean[] solvable = {true, true, true, true, false, true};
+		for (int m = 0; m < mazes.size(); m++) {
+			MazeFile maze = mazes.get(m);
+			for (Maze.Representation representation : Maze.Representation.values()) {
+				String what = "corridor maze " + m + " " + representation;
+				if (solvable[m]) {
+					compareContracted(what, maze, representation);
+				} else {
+					Maze contracted = new Maze(maze, representation);
+					contracted.setContractCorridors(true);
+					for (Maze.Strategy strategy : Maze.Strategy.values()) {
+						expect(contracted.solve(strategy) == null, what + " " + strategy + ": found a route");
+					}
+				}
+			}
+		}
+		report();
+	}
+
+	/* Solve a maze with and without its corridors contracted, expecting the
+	   same BACKTRACKING route, equally cheap FEWEST_COINS routes, and valid
+	   routes for every strategy. */
+	private static void compareContracted(String what, MazeFile file, Maze.Representation representation)
+			throws Exception {
+		Maze plain = new Maze(file, representation);
+		Maze contracted = new Maze(file, representation);
+		contracted.setContractCorridors(true);
+		for (Maze.Strategy strategy : Maze.Strategy.values()) {
+			int[] before = rooms(plain.solve(strategy));
+			int[] after = rooms(contracted.solve(strategy));
+			if (!checkPath(file, after, what + " contracted " + strategy)) {
+				continue;
+			}
+			if (strategy == Maze.Strategy.BACKTRACKING) {
+				expect(Arrays.equals(before, after), what + ": contracting changed the BACKTRACKING route");
+			} else if (strategy == Maze.Strategy.FEWEST_COINS && before != null) {
+				expect(coins(file, before) == coins(file, after), what + ": contracting changed the fewest coins from "
+						+ coins(file, before) + " to " + coins(file, after));
+			}
+		}
+	}
+
+	/* getGraph gives the Graph of a maze stored as one, as it always has, and
+	   graph gives the graph however it is stored. */
+	private static void testGraphAccess(String directory) throws Exception {
+		String file = directory + "/maze1.txt";
+		Maze small = new Maze(file);
+		expect(small.getGraph() == small.graph(), "a small maze is not stored as a Graph");
+		for (Maze.Representation representation : Maze.Representation.values()) {
+			Maze maze = new Maze(file, representation);
+			expect(maze.graph() != null, representation + ": no graph");
+			boolean stored = maze.graph() instanceof Graph;
+			try {
+				maze.getGraph();
+				expect(stored, representation + ": getGraph gave a graph that is not a Graph");
+			} catch (IllegalStateException e) {
+				expect(!stored, representation + ": getGraph refused a Graph");
+			}
+		}
+		report();
+	}
+
+	/* Filling a CompactGraph straight from a grid in parallel gives the graph
+	   inserting the grid's links row by row does, slot for slot. */
+	private static void testCompactFromGrid(String directory) throws Exception {
+		List<MazeFile> mazes = new ArrayList<>();
+		for (String name : MAZES) {
+			mazes.add(MazeFile.read(directory + "/" + name));
+		}
+		// more rooms than one band of fromGrid
+		mazes.add(textMaze(new MazeGenerator(MazeGenerator.Kind.DOORS, 400, 300, 20, 5)));
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (MazeFile maze : mazes) {
+				GridGraph grid = maze.getGraph();
+				CompactGraph inserted = new CompactGraph(grid.numNodes());
+				int width = grid.getWidth();
+				for (int row = 0; row < grid.getLength(); row++) {
+					for (int u = row * width; u < row * width + width - 1; u++) {
+						insertLink(inserted, grid.right(u), u, u + 1);
+					}
+					for (int u = row * width; row < grid.getLength() - 1 && u < row * width + width; u++) {
+						insertLink(inserted, grid.lower(u), u, u + width);
+					}
+				}
+				inserted.build();
+				CompactGraph filled = CompactGraph.fromGrid(grid, pool);
+				String what = width + "x" + grid.getLength() + " maze";
+				boolean same = inserted.numEdges() == filled.numEdges();
+				for (int u = 0; same && u < grid.numNodes(); u++) {
+					same = inserted.degree(u) == filled.degree(u);
+					for (int i = 0; same && i < inserted.degree(u); i++) {
+						same = inserted.neighbour(u, i) == filled.neighbour(u, i)
+								&& inserted.edgeType(u, i) == filled.edgeType(u, i);
+					}
+					if (same && grid.numNodes() < 10000) {
+						// the labels and endpoints the GraphADT views give
+						Iterator<GraphEdge> a = inserted.incidentEdges(inserted.getNode(u));
+						Iterator<GraphEdge> b = filled.incidentEdges(filled.getNode(u));
+						while (same && a.hasNext()) {
+							GraphEdge x = a.next();
+							GraphEdge y = b.next();
+							same = x.getLabel().equals(y.getLabel())
+									&& x.firstEndpoint().getName() == y.firstEndpoint().getName();
+						}
+					}
+				}
+				expect(same, what + ": the graph filled from the grid differs from the one inserted");
+			}
+		} finally {
+			pool.shutdown();
+		}
+		report();
+	}
+
+	private static void insertLink(CompactGraph graph, int code, int u, int v) throws GraphException {
+		if (code >= GridGraph.DOOR) {
+			graph.insertEdge(u, v, code - GridGraph.DOOR, "door");
+		} else if (code == GridGraph.CORRIDOR) {
+			graph.insertEdge(u, v, 0, "corridor");
+		}
+	}
+
+	/* Every strategy reports the rooms it visits and the edges it looks at to
+	   the trace sink, the depth first ones their backtracks too, and a ring
+	   keeps the newest events once it is full. */
+	private static void testTrace(String directory) throws Exception {
+		MazeFile file = MazeFile.read(directory + "/maze7.txt");
+		for (Maze.Strategy strategy : Maze.Strategy.values()) {
+			TraceRing ring = new TraceRing(1 << 16);
+			Maze maze = new Maze(file);
+			Trace.setSink(ring);
+			try {
+				maze.solve(strategy);
+			} finally {
+				Trace.setSink(null);
+			}
+			int[] counts = new int[3];
+			boolean start = false;
+			for (int i = 0; i < ring.size(); i++) {
+				int[] event = ring.event(i);
+				counts[event[0]]++;
+				start |= event[0] == TraceRing.VISIT && event[1] == file.getStart();
+			}
+			expect(counts[TraceRing.VISIT] > 0 && start, strategy + ": no visit to the start reported");
+			expect(counts[TraceRing.EDGE] > 0, strategy + ": no edges reported");
+			boolean depthFirst = strategy == Maze.Strategy.DEPTH_FIRST || strategy == Maze.Strategy.BACKTRACKING;
+			expect((counts[TraceRing.BACKTRACK] > 0) == depthFirst, strategy + ": " + counts[TraceRing.BACKTRACK]
+					+ " backtracks reported");
+		}
+
+		TraceRing ring = new TraceRing(3);
+		for (int u = 0; u < 5; u++) {
+			ring.nodeVisited(u, 10 - u);
+		}
+		ring.backtrack(5);
+		expect(ring.size() == 3, "a ring of 3 holds " + ring.size() + " events");
+		expect(ring.event(0)[1] == 3 && ring.event(1)[1] == 4 && ring.event(1)[3] == 6, "the ring kept the wrong events");
+		expect(Arrays.equals(ring.event(2), new int[] {TraceRing.BACKTRACK, 5, -1, -1}), "the last event is "
+				+ Arrays.toString(ring.event(2)));
+		try {
+			ring.event(3);
+			expect(false, "the ring gave an event it does not hold");
+		} catch (IndexOutOfBoundsException e) {
+			// only three are kept
+		}
+		Path saved = scratch.resolve("trace.bin");
+		ring.writeTo(saved.toString());
+		java.nio.ByteBuffer bytes = java.nio.ByteBuffer.wrap(Files.readAllBytes(saved));
+		boolean same = bytes.getInt() == 3;
+		for (int e = 0; same && e < 3; e++) {
+			for (int value : ring.event(e)) {
+				same &= bytes.getInt() == value;
+			}
+		}
+		expect(same && !bytes.hasRemaining(), "the saved ring differs from its events");
+		report();
+	}
+
+	/* The counters of a solve of maze0 match what the search does to it, and
+	   agree with the events it reports to the trace sink; a budgeted search
+	   stops exactly when it reaches its state cap, and at the next check once
+	   cancelled or out of time, keeping the room it got nearest the end. */
+	private static void testSolveStats(String directory) throws Exception {
+		MazeFile file = MazeFile.read(directory + "/maze0.txt");
+		for (Maze.Representation representation : Maze.Representation.values()) {
+			SolveStats stats = new SolveStats();
+			TraceRing ring = new TraceRing(1 << 10);
+			Trace.setSink(ring);
+			try {
+				new Maze(file, representation).solve(Maze.Strategy.BACKTRACKING, stats);
+			} finally {
+				Trace.setSink(null);
+			}
+			String what = "maze0 as " + representation + ": ";
+			expect(stats.getNodesVisited() == 9, what + stats.getNodesVisited() + " rooms visited, not 9");
+			expect(stats.getEdgesConsidered() == 21, what + stats.getEdgesConsidered() + " edges considered, not 21");
+			expect(stats.getEdgesUnaffordable() == 5, what + stats.getEdgesUnaffordable()
+					+ " edges skipped for coins, not 5");
+			expect(stats.getBacktracks() == 5, what + stats.getBacktracks() + " backtracks, not 5");
+			expect(stats.getMaxDepth() == 6, what + "a depth of " + stats.getMaxDepth() + ", not 6");
+			expect(stats.getPeakFrontier() == 6, what + "a frontier of " + stats.getPeakFrontier() + ", not 6");
+			expect(!stats.isRunning(), what + "still running after the solve");
+			int[] counts = new int[3];
+			for (int i = 0; i < ring.size(); i++) {
+				counts[ring.event(i)[0]]++;
+			}
+			expect(counts[TraceRing.VISIT] == stats.getNodesVisited() && counts[TraceRing.EDGE] == stats
+					.getEdgesConsidered() && counts[TraceRing.BACKTRACK] == stats.getBacktracks(), what
+					+ "the trace reports " + Arrays.toString(counts));
+		}
+
+		// a 10 by 10 maze heading for room 99, expanding rooms along the top row
+		SolveStats stats = new SolveStats();
+		stats.start(0, 0);
+		stats.limit(new SolveBudget(0, TimeUnit.SECONDS, 10, null), 99, 10);
+		int expanded = 0;
+		boolean halted = false;
+		while (!halted && expanded < 100) {
+			stats.visited(1);
+			halted = stats.halted(expanded++ % 10);
+		}
+		expect(expanded == 10 && stats.stopped() == SolveBudget.Limit.STATES, "a cap of 10 states stopped after "
+				+ expanded + " with " + stats.stopped());
+		expect(stats.closest() == 9 && stats.closestDistance() == 9, "room " + stats.closest() + " at "
+				+ stats.closestDistance() + " is not the nearest expanded");
+
+		SolveBudget budget = new SolveBudget(0, TimeUnit.SECONDS, 0, null);
+		stats.start(0, 0);
+		stats.limit(budget, 99, 10);
+		expect(!stats.halted(0), "an unlimited budget halted");
+		budget.cancel();
+		expect(checksToHalt(stats) > 0 && stats.stopped() == SolveBudget.Limit.CANCELLED, "a cancelled search stopped with "
+				+ stats.stopped());
+
+		stats.start(0, 0);
+		stats.limit(new SolveBudget(1, TimeUnit.NANOSECONDS, 0, null), 99, 10);
+		Thread.sleep(1);
+		expect(checksToHalt(stats) > 0 && stats.stopped() == SolveBudget.Limit.DEADLINE, "a search out of time stopped with "
+				+ stats.stopped());
+		report();
+	}
+
+	/* Expand room 0 until a budgeted search halts; returns the expansions it
+	   took, or 0 if it did not halt within 8192, twice the rooms between checks. */
+	private static int checksToHalt(SolveStats stats) {
+		for (int expanded = 1; expanded <= 8192; expanded++) {
+			stats.visited(1);
+			if (stats.halted(0)) {
+				return expanded;
+			}
+		}
+		return 0;
+	}
+
+	/* A budgeted solve fails with the limit it ran into and the route to the
+	   room nearest the exit it had reached; cancelling its future cancels its
+	   budget, and it runs on the executor it is given. */
+	private static void testSolveAsync(String directory) throws Exception {
+		MazeFile file = MazeFile.read(directory + "/maze7.txt");
+		for (Maze.Strategy strategy : Maze.Strategy.values()) {
+			SolveStats stats = new SolveStats();
+			SolveLimitException limit = limit(new Maze(file).solveAsync(strategy, new SolveBudget(0, TimeUnit.SECONDS,
+					1, null), stats));
+			if (limit == null) {
+				expect(false, strategy + ": a cap of 1 state did not stop the search");
+				continue;
+			}
+			expect(limit.getLimit() == SolveBudget.Limit.STATES, strategy + ": stopped by " + limit.getLimit());
+			expect(limit.getStates() == stats.getNodesVisited(), strategy + ": " + limit.getStates() + " states reported, "
+					+ stats.getNodesVisited() + " counted");
+			int[] partial = rooms(limit.getPartialPath());
+			int width = file.getGraph().getWidth();
+			int last = partial == null ? -1 : partial[partial.length - 1];
+			expect(partial != null && partial[0] == file.getStart(), strategy + ": the best route does not leave the start");
+			expect(last >= 0 && Math.abs(last / width - file.getEnd() / width) + Math.abs(last % width - file.getEnd()
+					% width) == limit.getDistance(), strategy + ": the best route does not end "
+					+ limit.getDistance() + " rooms from the exit");
+		}
+
+		// every route through a braided maze is far too many for backtracking to finish
+		MazeFile braided = textMaze(new MazeGenerator(MazeGenerator.Kind.BRAIDED, 60, 60, 10, 3));
+		SolveLimitException deadline = limit(new Maze(braided).solveAsync(Maze.Strategy.BACKTRACKING, new SolveBudget(50,
+				TimeUnit.MILLISECONDS, 0, null)));
+		expect(deadline != null && deadline.getLimit() == SolveBudget.Limit.DEADLINE, "a deadline of 50ms stopped the search with "
+				+ (deadline == null ? null : deadline.getLimit()));
+
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		AtomicInteger submitted = new AtomicInteger();
+		try {
+			SolveBudget budget = new SolveBudget(0, TimeUnit.SECONDS, 0, null);
+			SolveStats stats = new SolveStats();
+			CompletableFuture<Iterator<GraphNode>> future = new Maze(braided).solveAsync(
+					Maze.Strategy.BACKTRACKING, budget, stats, task -> {
+						submitted.incrementAndGet();
+						pool.execute(task);
+					});
+			expect(submitted.get() == 1, "the search was not handed to the given executor");
+			future.cancel(true);
+			expect(budget.isCancelled(), "cancelling the future did not cancel the budget");
+			pool.shutdown();
+			expect(pool.awaitTermination(10, TimeUnit.SECONDS) && stats.stopped() == SolveBudget.Limit.CANCELLED,
+					"a cancelled search stopped with " + stats.stopped());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		try {
+			new Maze(file).solveAsync(Maze.Strategy.FEWEST_ROOMS, null);
+			expect(false, "a solve without a budget was started");
+		} catch (IllegalArgumentException e) {
+			// solve(Strategy) is the way to search without one
+		}
+		report();
+	}
+
+	/* Wait for a budgeted solve; returns the limit it failed with, or null if
+	   it finished or took more than 10 seconds. */
+	private static SolveLimitException limit(CompletableFuture<Iterator<GraphNode>> future)
+			throws InterruptedException {
+		try {
+			future.get(10, TimeUnit.SECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SolveLimitException) {
+				return (SolveLimitException) e.getCause();
+			}
+			problems.add("the solve failed with " + e.getCause());
+		} catch (TimeoutException e) {
+			future.cancel(true);
+		}
+		return null;
+	}
+
+	/* The route from the start to the exit of each sample maze spends the
+	   fewest coins, the route from the exit is the exit alone, and rooms cut
+	   off from the exit have none; a batch of queries answered on a pool
+	   gives the same routes as asking one room at a time. */
+	private static void testRoutesToExit(String directory) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int i = 0; i < MAZES.length; i++) {
+				MazeFile file = MazeFile.read(directory + "/" + MAZES[i]);
+				Maze maze = new Maze(file);
+				int[] path = rooms(maze.pathFrom(file.getStart()));
+				if (checkPath(file, path, MAZES[i] + " from the start")) {
+					expect(coins(file, path) == FEWEST_COINS[i], MAZES[i] + ": the route from the start spends "
+							+ coins(file, path) + " coins, expected " + FEWEST_COINS[i]);
+				}
+				int[] end = rooms(maze.pathFrom(file.getEnd()));
+				expect(Arrays.equals(end, new int[] {file.getEnd()}), MAZES[i] + ": the route from the exit is "
+						+ Arrays.toString(end));
+
+				// every room, repeated so the batch is large enough to be split over the pool
+				int rooms = file.getGraph().numNodes();
+				int[] batch = new int[Math.max(rooms, 1024)];
+				for (int b = 0; b < batch.length; b++) {
+					batch[b] = b % rooms;
+				}
+				RouteTree tree = RouteTree.build(file.getGraph(), file.getEnd());
+				int[][] pooled = tree.paths(batch, file.getCoins(), pool);
+				List<Iterator<GraphNode>> paths = maze.pathsFrom(batch);
+				boolean same = true;
+				for (int b = 0; b < batch.length; b++) {
+					int[] single = tree.path(batch[b], file.getCoins());
+					same &= Arrays.equals(pooled[b], single) && Arrays.equals(rooms(paths.get(b)), single);
+				}
+				expect(same, MAZES[i] + ": a batch of routes differs from the routes one at a time");
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		String[][] cutOff = {{"walled.txt", "0", "4"}, {"locked.txt", "0", "1"}};
+		for (String[] test : cutOff) {
+			MazeFile file = MazeFile.read(scratch.resolve(test[0]).toString());
+			Maze maze = new Maze(file);
+			for (int r = 1; r < test.length; r++) {
+				expect(maze.pathFrom(Integer.parseInt(test[r])) == null, test[0] + ": a route from room " + test[r]);
+			}
+			expect(Arrays.equals(rooms(maze.pathFrom(file.getEnd())), new int[] {file.getEnd()}), test[0]
+					+ ": no route from the exit to itself");
+		}
+		report();
+	}
+
+	/* The full size tiles of a maze picture, put back together, are the
+	   picture drawn in one piece, with the space past its edges left white;
+	   each level above has a quarter as many tiles, down to one. */
+	private static void testTiles(String directory) throws Exception {
+		Maze maze = new Maze(directory + "/maze7.txt", Maze.Representation.GRID);
+		MazeImage picture = new MazeImage(maze.toMazeFile(), maze.solve(Maze.Strategy.DEPTH_FIRST));
+		BufferedImage whole = picture.render();
+		Path tiles = scratch.resolve("tiles");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		int written;
+		try {
+			written = picture.writeTiles(tiles.toString(), pool);
+		} finally {
+			pool.shutdown();
+		}
+
+		int zoom = picture.getMaxZoom();
+		int size = MazeImage.TILE_SIZE;
+		int across = (whole.getWidth() + size - 1) / size;
+		int down = (whole.getHeight() + size - 1) / size;
+		expect(zoom == 2 && across == 4 && down == 3, "maze7 is " + across + " by " + down + " tiles at zoom " + zoom);
+		int mismatches = 0;
+		for (int x = 0; x < across; x++) {
+			for (int y = 0; y < down; y++) {
+				BufferedImage tile = ImageIO.read(tiles.resolve(zoom + "/" + x + "/" + y + ".png").toFile());
+				for (int row = 0; row < size; row++) {
+					for (int col = 0; col < size; col++) {
+						int px = x * size + col;
+						int py = y * size + row;
+						boolean inside = px < whole.getWidth() && py < whole.getHeight();
+						int expected = inside ? whole.getRGB(px, py) : 0xffffffff;
+						mismatches += tile.getRGB(col, row) == expected ? 0 : 1;
+					}
+				}
+			}
+		}
+		expect(mismatches == 0, mismatches + " pixels of the full size tiles differ from the whole picture");
+
+		int expected = 0;
+		for (int level = 0; level <= zoom; level++) {
+			int span = size << (zoom - level);
+			int count = ((whole.getWidth() + span - 1) / span) * ((whole.getHeight() + span - 1) / span);
+			try (java.util.stream.Stream<Path> files = Files.list(tiles.resolve(String.valueOf(level)))) {
+				int found = files.mapToInt(folder -> folder.toFile().list().length).sum();
+				expect(found == count, "zoom " + level + " has " + found + " tiles, expected " + count);
+			}
+			expected += count;
+		}
+		expect(written == expected, written + " tiles reported written, expected " + expected);
+		report();
+	}
+
+	/* The animator draws every queued edge once and in order, even when more
+	   are queued while it draws, and finish returns only after the last
+	   batch; with a delay it spreads the edges over time, and it shows the
+	   newest rooms a search visits once they outrun the ring. */
+	private static void testAnimator() throws Exception {
+		Screen screen = new Screen();
+		PathAnimator animator = new PathAnimator(screen, 60, 0);
+		int edges = 12000;
+		for (int i = 0; i < 5000; i++) {
+			animator.addEdge(i, i + 1);
+		}
+		// hold the first batch on the screen while the queue fills up, so the
+		// edges taken are dropped from the queue to make room before it grows
+		CountDownLatch drawing = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		screen.hold(drawing, release);
+		animator.start();
+		expect(drawing.await(5, TimeUnit.SECONDS), "the animator drew nothing");
+		for (int i = 5000; i < edges; i++) {
+			animator.addEdge(i, i + 1);
+		}
+		release.countDown();
+		animator.finish();
+		expect(screen.edges() == edges, screen.edges() + " of " + edges + " edges drawn when finish returned");
+		expect(screen.inOrder(), "the edges were not drawn once each in order");
+
+		screen = new Screen();
+		animator = new PathAnimator(screen, 60, 2);
+		long begin = System.nanoTime();
+		animator.start();
+		for (int i = 0; i < 30; i++) {
+			animator.addEdge(i, i + 1);
+		}
+		animator.finish();
+		long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+		expect(screen.edges() == 30 && screen.inOrder(), "paced edges were not drawn once each in order");
+		// 30 edges 2ms apart, less the first frame's worth drawn at once
+		expect(millis >= 40, "30 edges 2ms apart were drawn in " + millis + "ms");
+
+		screen = new Screen();
+		animator = new PathAnimator(screen, 60, 0);
+		TraceSink sink = animator.frontier();
+		int visits = PathAnimator.FRONTIER_RING + 100;
+		for (int u = 0; u < visits; u++) {
+			sink.nodeVisited(u, 0);
+		}
+		animator.addEdge(0, 1);
+		animator.start();
+		animator.finish();
+		boolean newest = screen.rooms.size() == PathAnimator.FRONTIER_RING;
+		for (int i = 0; newest && i < screen.rooms.size(); i++) {
+			newest = screen.rooms.get(i) == visits - PathAnimator.FRONTIER_RING + i;
+		}
+		expect(newest, "the rooms shown are not the newest " + PathAnimator.FRONTIER_RING + " visited, in order");
+		report();
+	}
+
+	/* Records what an animator draws. */
+	private static final class Screen implements PathDisplay {
+		private final List<Integer> edges = new ArrayList<>();
+		private final List<Integer> rooms = new ArrayList<>();
+		// the first batch of edges counts down drawing, then waits for release
+		private volatile CountDownLatch drawing;
+		private volatile CountDownLatch release;
+
+		void hold(CountDownLatch started, CountDownLatch resume) {
+			drawing = started;
+			release = resume;
+		}
+
+		@Override
+		public void drawEdges(int[] batch, int count) {
+			if (count > 0 && drawing != null) {
+				drawing.countDown();
+				drawing = null;
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (this) {
+				for (int i = 0; i < 2 * count; i++) {
+					edges.add(batch[i]);
+				}
+			}
+		}
+
+		@Override
+		public synchronized void drawVisited(int[] batch, int count) {
+			for (int i = 0; i < count; i++) {
+				rooms.add(batch[i]);
+			}
+		}
+
+		synchronized int edges() {
+			return edges.size() / 2;
+		}
+
+		/* Whether edge i went from room i to room i + 1 for every edge drawn. */
+		synchronized boolean inOrder() {
+			for (int i = 0; i < edges.size() / 2; i++) {
+				if (edges.get(2 * i) != i || edges.get(2 * i + 1) != i + 1) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/* Record the result of a check in the current test. */
+	private static void expect(boolean passed, String problem) {
+		if (!passed) {
+			problems.add(problem);
+		}
+	}
+
+	/* Finish the current test, printing whether it passed. */
+	private static void report() {
+		tests++;
+		if (problems.isEmpty()) {
+			System.out.println("    Test " + tests + " passed");
+		} else {
+			failures++;
+			System.out.println("    Test " + tests + " failed:");
+			for (String problem : problems) {
+				System.out.println("           " + problem);
+			}
+			problems.clear();
+		}
+	}
+
+	/* Check that a path runs from the start to the exit of a maze through open
+	   sides, never repeats a room and spends no more coins than the maze gives. */
+	private static boolean checkPath(MazeFile maze, int[] path, String what) {
+		if (path == null || path.length == 0) {
+			expect(false, what + ": no route");
+			return false;
+		}
+		if (path[0] != maze.getStart() || path[path.length - 1] != maze.getEnd()) {
+			expect(false, what + ": route does not run from the start to the exit");
+			return false;
+		}
+		boolean[] seen = new boolean[maze.getGraph().numNodes()];
+		for (int i = 0; i < path.length; i++) {
+			if (seen[path[i]]) {
+				expect(false, what + ": route enters room " + path[i] + " twice");
+				return false;
+			}
+			seen[path[i]] = true;
+			if (i > 0 && link(maze.getGraph(), path[i - 1], path[i]) == GridGraph.WALL) {
+				expect(false, what + ": no opening between rooms " + path[i - 1] + " and " + path[i]);
+				return false;
+			}
+		}
+		if (coins(maze, path) > maze.getCoins()) {
+			expect(false, what + ": route spends " + coins(maze, path) + " coins of " + maze.getCoins());
+			return false;
+		}
+		return true;
+	}
+
+	/* The link code between two rooms, WALL unless they are side by side. */
+	private static int link(GridGraph grid, int u, int v) {
+		int low = Math.min(u, v);
+		int high = Math.max(u, v);
+		if (high == low + 1 && high % grid.getWidth() != 0) {
+			return grid.right(low);
+		}
+		if (high == low + grid.getWidth()) {
+			return grid.lower(low);
+		}
+		return GridGraph.WALL;
+	}
+
+	/* The coins spent on the doors along a path. */
+	private static int coins(MazeFile maze, int[] path) {
+		int spent = 0;
+		for (int i = 1; i < path.length; i++) {
+			int code = link(maze.getGraph(), path[i - 1], path[i]);
+			if (code >= GridGraph.DOOR) {
+				spent += code - GridGraph.DOOR;
+			}
+		}
+		return spent;
+	}
+
+	/* The rooms of a solution, or null if there is none. */
+	private static int[] rooms(Iterator<GraphNode> solution) {
+		if (solution == null) {
+			return null;
+		}
+		List<Integer> rooms = new ArrayList<>();
+		while (solution.hasNext()) {
+			rooms.add(solution.next().getName());
+		}
+		int[] path = new int[rooms.size()];
+		for (int i = 0; i < path.length; i++) {
+			path[i] = rooms.get(i);
+		}
+		return path;
+	}
+
+	/* Write a maze file into the scratch directory. */
+	private static String write(String name, String... lines) throws IOException {
+		Path file = scratch.resolve(name);
+		Files.write(file, List.of(lines));
+		return file.toString();
+	}
+
+	private static void deleteScratch() throws IOException {
+		try (java.util.stream.Stream<Path> files = Files.walk(scratch)) {
+			for (Path file : (Iterable<Path>) files.sorted((a, b) -> b.compareTo(a))::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * Leveled tracing for loading and solving mazes, off by default.
+ *
+ * The level is read once from the maze.trace system property (off, info or
+ * debug), so the INFO and DEBUG flags are constants the JIT folds away. Build
+ * trace messages only inside a check of the flag, so a disabled level costs
+ * no allocation:
+ *
+ *     if (Trace.DEBUG) {
+ *         Trace.debug("Start node found at index: " + start);
+ *     }
+ *
+ * Searches also report what they do to a TraceSink, if one is set. They read
+ * the sink once per search, so with no sink the cost is a null check per step.
+ */
+public final class Trace {
+
+	/**
+	 * How much to trace
+	 */
+	public enum Level {
+		OFF,
+		// a line per load and per solve
+		INFO,
+		// details such as where the start and end rooms are
+		DEBUG
+	}
+
+	/**
+	 * The level, from the maze.trace system property
+	 */
+	public static final Level LEVEL = level(System.getProperty("maze.trace"));
+	public static final boolean INFO = LEVEL.compareTo(Level.INFO) >= 0;
+	public static final boolean DEBUG = LEVEL.compareTo(Level.DEBUG) >= 0;
+
+	// where searches report their events, null for nowhere
+	private static volatile TraceSink sink;
+
+	private Trace() {
+	}
+
+	/**
+	 * Print a message if the INFO level is on
+	 * @param message the message
+	 */
+	public static void info(String message) {
+		if (INFO) {
+			System.out.println(message);
+		}
+	}
+
+	/**
+	 * Print a message if the DEBUG level is on
+	 * @param message the message
+	 */
+	public static void debug(String message) {
+		if (DEBUG) {
+			System.out.println(message);
+		}
+	}
+
+	/**
+	 * Set where searches report their events
+	 * @param newSink the sink, or null to stop reporting
+	 */
+	public static void setSink(TraceSink newSink) {
+		sink = newSink;
+	}
+
+	/**
+	 * returns where searches report their events
+	 * @return the sink, or null if there is none
+	 */
+	public static TraceSink sink() {
+		return sink;
+	}
+
+	private static Level level(String name) {
+		if (name == null) {
+			return Level.OFF;
+		}
+		try {
+			return Level.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return Level.OFF;
+		}
+	}
+}
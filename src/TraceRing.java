@@ -0,0 +1,109 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A TraceSink that keeps the most recent search events in a fixed ring of
+ * ints, for looking at after a search has gone wrong. Recording an event
+ * allocates nothing; once the ring is full the oldest events are overwritten.
+ *
+ * writeTo saves the events, oldest first, as big-endian ints: the number of
+ * events, then four ints per event (kind, node, other node or -1, coins or -1).
+ */
+public class TraceRing implements TraceSink {
+
+	// event kinds
+	public static final int VISIT = 0;
+	public static final int EDGE = 1;
+	public static final int BACKTRACK = 2;
+
+	// ints per event
+	private static final int EVENT = 4;
+
+	private final int[] events;
+	// the number of events recorded since the ring was made
+	private long recorded;
+
+	/**
+	 * Constructor for the ring
+	 * @param capacity the number of events kept
+	 */
+	public TraceRing(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive");
+		}
+		events = new int[capacity * EVENT];
+	}
+
+	@Override
+	public void nodeVisited(int u, int coins) {
+		record(VISIT, u, -1, coins);
+	}
+
+	@Override
+	public void edgeConsidered(int u, int v, int coins) {
+		record(EDGE, u, v, coins);
+	}
+
+	@Override
+	public void backtrack(int u) {
+		record(BACKTRACK, u, -1, -1);
+	}
+
+	/**
+	 * returns the number of events kept
+	 * @return the number of events in the ring
+	 */
+	public synchronized int size() {
+		return (int) Math.min(recorded, events.length / EVENT);
+	}
+
+	/**
+	 * Get an event
+	 * @param i the event, 0 for the oldest kept
+	 * @return the kind, node, other node and coins of the event
+	 */
+	public synchronized int[] event(int i) {
+		if (i < 0 || i >= size()) {
+			throw new IndexOutOfBoundsException("No event " + i);
+		}
+		int slot = slot(recorded - size() + i);
+		int[] event = new int[EVENT];
+		System.arraycopy(events, slot, event, 0, EVENT);
+		return event;
+	}
+
+	/**
+	 * Write the events kept, oldest first
+	 * @param outputFile the file to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void writeTo(String outputFile) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputFile)))) {
+			int size = size();
+			out.writeInt(size);
+			for (long e = recorded - size; e < recorded; e++) {
+				int slot = slot(e);
+				for (int i = 0; i < EVENT; i++) {
+					out.writeInt(events[slot + i]);
+				}
+			}
+		}
+	}
+
+	private synchronized void record(int kind, int u, int v, int coins) {
+		int slot = slot(recorded++);
+		events[slot] = kind;
+		events[slot + 1] = u;
+		events[slot + 2] = v;
+		events[slot + 3] = coins;
+	}
+
+	/**
+	 * returns the index in the ring of the first int of an event
+	 */
+	private int slot(long event) {
+		return (int) (event % (events.length / EVENT)) * EVENT;
+	}
+}
@@ -0,0 +1,20 @@
+/**
+ * Receives the steps of a search as they happen, see Trace.setSink.
+ * Searches running at the same time report to the same sink, so
+ * implementations must be thread safe. Every strategy reports its visits and
+ * edges; PARALLEL_FEWEST_ROOMS reports from the pool's workers, and
+ * BIDIRECTIONAL from both ends, so their events are not in search order.
+ * Only the depth first searches backtrack.
+ */
+public interface TraceSink {
+
+  /* A search entered node u holding the given coins. */
+  public void nodeVisited(int u, int coins);
+
+  /* A search looked at the edge from u to v; coins is what would be left after
+     crossing it, negative if the edge cannot be paid for. */
+  public void edgeConsidered(int u, int v, int coins);
+
+  /* A depth first search gave up on node u and returned to the node before it. */
+  public void backtrack(int u);
+}